@@ -0,0 +1,324 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A multi-day calendar. Events are partitioned by day into one Planner per day, so each day stays a
+ * sorted segment of its own. Instants are encoded as a single long key, epoch day * 1440 + minute of day,
+ * and the partitions are kept in a map ordered by epoch day so range queries only visit the days inside
+ * the range. A day holds no partition at all until an event is added to it, and loses it again when its
+ * last event is removed. An event that runs past midnight is split into one piece per day; the pieces are
+ * linked so the event can be followed and removed as a whole. Since MyTime cannot express 24:00, a piece
+ * running up to midnight is stored as ending at 23:59.
+ * @author Hongjia Hao
+ */
+public class Calendar {
+
+	/**
+	 * Non-empty days, by epoch day.
+	 */
+	private final TreeMap<Long, Planner> days;
+
+	/**
+	 * Next piece of each event split across midnight.
+	 */
+	private final IdentityHashMap<Event, Event> nextPiece;
+
+	/**
+	 * Previous piece of each continuation piece.
+	 */
+	private final IdentityHashMap<Event, Event> previousPiece;
+
+	/**
+	 * Number of events, counting a split event once.
+	 */
+	private int size;
+
+	/**
+	 * Constructor.
+	 */
+	public Calendar(){
+
+		this.days = new TreeMap<>();
+		this.nextPiece = new IdentityHashMap<>();
+		this.previousPiece = new IdentityHashMap<>();
+		this.size = 0;
+	}
+
+	/**
+	 * Encode a date and a time as a key.
+	 * @param date	date
+	 * @param time	time
+	 * @return	epoch day * 1440 + minute of day
+	 * @throws IllegalArgumentException	valid date and time
+	 */
+	public static long key(LocalDate date, MyTime time) throws IllegalArgumentException{
+
+		if(date == null || time == null){
+			throw new IllegalArgumentException("Null date or time!");
+		}
+		return date.toEpochDay() * MyTime.MINUTES_PER_DAY + time.toMinutes();
+	}
+
+	/**
+	 * Decode the date of a key.
+	 * @param key	key
+	 * @return	date
+	 */
+	public static LocalDate dateOf(long key){
+		return LocalDate.ofEpochDay(Math.floorDiv(key, MyTime.MINUTES_PER_DAY));
+	}
+
+	/**
+	 * Decode the time of a key.
+	 * @param key	key
+	 * @return	time
+	 */
+	public static MyTime timeOf(long key){
+		return MyTime.fromMinutes(Math.floorMod(key, MyTime.MINUTES_PER_DAY));
+	}
+
+	/**
+	 * Report the number of events, counting an event split across days once.
+	 * @return	size
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Report the number of days holding at least one event.
+	 * @return	number of days
+	 */
+	public int dayCount(){
+		return days.size();
+	}
+
+	/**
+	 * Get the planner holding the events of a day. Changes made through it bypass the calendar's
+	 * bookkeeping, so it should only be read.
+	 * @param date	date
+	 * @return	planner, or null if the day has no events
+	 */
+	public Planner getDay(LocalDate date){
+
+		if(date == null){
+			return null;
+		}
+		return days.get(date.toEpochDay());
+	}
+
+	/**
+	 * Add an event, splitting it into linked pieces if it runs past midnight.
+	 * @param start	key of the start
+	 * @param duration	duration in minutes
+	 * @param description	description
+	 * @return	the first piece
+	 * @throws IllegalArgumentException	valid duration
+	 */
+	public Event addEvent(long start, int duration, String description) throws IllegalArgumentException{
+
+		if(duration < 0){
+			throw new IllegalArgumentException("Duration must be non-negative!");
+		}
+		long day = Math.floorDiv(start, MyTime.MINUTES_PER_DAY);
+		int minute = Math.floorMod(start, MyTime.MINUTES_PER_DAY);
+		int remaining = duration;
+		Event first = null;
+		Event previous = null;
+		while(true){
+			int end = Math.min(minute + remaining, MyTime.END_OF_DAY);
+			Event piece = new Event(MyTime.fromMinutes(minute), MyTime.fromMinutes(end), description);
+			days.computeIfAbsent(day, key -> new Planner()).addEvent(piece);
+			if(previous == null){
+				first = piece;
+			}
+			else{
+				nextPiece.put(previous, piece);
+				previousPiece.put(piece, previous);
+			}
+			remaining -= MyTime.MINUTES_PER_DAY - minute;
+			if(remaining <= 0){
+				break;
+			}
+			previous = piece;
+			minute = 0;
+			day++;
+		}
+		size++;
+		return first;
+	}
+
+	/**
+	 * Add an event, splitting it into linked pieces if it runs past midnight.
+	 * @param date	date
+	 * @param start	start time
+	 * @param duration	duration in minutes
+	 * @param description	description
+	 * @return	the first piece
+	 * @throws IllegalArgumentException	valid arguments
+	 */
+	public Event addEvent(LocalDate date, MyTime start, int duration, String description) throws IllegalArgumentException{
+		return this.addEvent(key(date, start), duration, description);
+	}
+
+	/**
+	 * Get the event at index within a day.
+	 * @param date	date
+	 * @param index	index
+	 * @return	the event, or null
+	 */
+	public Event getEvent(LocalDate date, int index){
+
+		Planner planner = this.getDay(date);
+		if(planner == null){
+			return null;
+		}
+		return planner.getEvent(index);
+	}
+
+	/**
+	 * Get the piece continuing an event on the next day.
+	 * @param piece	piece
+	 * @return	next piece, or null if the event ends on the piece's day
+	 */
+	public Event getContinuation(Event piece){
+		return nextPiece.get(piece);
+	}
+
+	/**
+	 * Get the pieces starting within [from, to), in order of their keys.
+	 * @param from	first key included
+	 * @param to	first key excluded
+	 * @return	pieces
+	 */
+	public Event[] getEvents(long from, long to){
+
+		List<Event> result = new ArrayList<>();
+		if(from >= to){
+			return new Event[0];
+		}
+		long firstDay = Math.floorDiv(from, MyTime.MINUTES_PER_DAY);
+		long lastDay = Math.floorDiv(to - 1, MyTime.MINUTES_PER_DAY);
+		for(Map.Entry<Long, Planner> entry : days.subMap(firstDay, true, lastDay, true).entrySet()){
+			Planner planner = entry.getValue();
+			int low = 0;
+			int high = planner.size();
+			if(entry.getKey() == firstDay){
+				low = planner.indexOf(timeOf(from));
+			}
+			if(entry.getKey() == lastDay && Math.floorMod(to, MyTime.MINUTES_PER_DAY) != 0){
+				high = planner.indexOf(timeOf(to));
+			}
+			for(int i = low; i < high; i++){
+				result.add(planner.getEvent(i));
+			}
+		}
+		return result.toArray(new Event[0]);
+	}
+
+	/**
+	 * Get the pieces starting on the days within [from, to].
+	 * @param from	first date
+	 * @param to	last date
+	 * @return	pieces
+	 * @throws IllegalArgumentException	valid dates
+	 */
+	public Event[] getEvents(LocalDate from, LocalDate to) throws IllegalArgumentException{
+
+		if(from == null || to == null){
+			throw new IllegalArgumentException("Null date!");
+		}
+		return this.getEvents(key(from, new MyTime()), key(to.plusDays(1), new MyTime()));
+	}
+
+	/**
+	 * Remove the event at index within a day, with all its pieces on other days.
+	 * @param date	date
+	 * @param index	index
+	 * @return	true if successed
+	 */
+	public boolean removeEvent(LocalDate date, int index){
+
+		Event piece = this.getEvent(date, index);
+		if(piece == null){
+			return false;
+		}
+		long day = date.toEpochDay();
+		while(previousPiece.containsKey(piece)){
+			piece = previousPiece.remove(piece);
+			day--;
+		}
+		while(piece != null){
+			Planner planner = days.get(day);
+			for(int i = planner.indexOf(piece.getStart()); i < planner.size(); i++){
+				if(planner.getEvent(i) == piece){
+					planner.removeEvent(i);
+					break;
+				}
+			}
+			if(planner.size() == 0){
+				days.remove(day);
+			}
+			Event next = nextPiece.remove(piece);
+			previousPiece.remove(next);
+			piece = next;
+			day++;
+		}
+		size--;
+		return true;
+	}
+
+	/**
+	 * 4 test cases.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		Calendar calendar = new Calendar();
+		LocalDate monday = LocalDate.of(2024, 3, 4);
+
+		// keys round trip
+		long key = key(monday, new MyTime(22, 15));
+		if (dateOf(key).equals(monday) && timeOf(key).toString().equals("22:15")){
+			System.out.println("Yay 1");
+		}
+
+		// an overnight event is split into linked pieces
+		Event night = calendar.addEvent(monday, new MyTime(22), 180, "night shift");
+		Event morning = calendar.getContinuation(night);
+		if (night.getEnd().toString().equals("23:59") && morning != null
+			&& morning.getStart().toString().equals("00:00") && morning.getEnd().toString().equals("01:00")
+			&& calendar.getDay(monday.plusDays(1)).getEvent(0) == morning && calendar.size() == 1){
+			System.out.println("Yay 2");
+		}
+
+		// range queries only see the days inside the range
+		calendar.addEvent(monday.plusDays(30), new MyTime(9), 60, "review");
+		calendar.addEvent(monday.plusDays(1), new MyTime(9), 60, "standup");
+		Event[] week = calendar.getEvents(monday, monday.plusDays(6));
+		Event[] tuesdayMorning = calendar.getEvents(key(monday.plusDays(1), new MyTime(0, 30)),
+			key(monday.plusDays(1), new MyTime(12)));
+		boolean rejected = false;
+		try{
+			calendar.getEvents(monday, null);
+		}
+		catch(IllegalArgumentException e){
+			rejected = true;
+		}
+		if (week.length == 3 && week[0] == night && week[1] == morning && rejected
+			&& tuesdayMorning.length == 1 && tuesdayMorning[0].getDescription().equals("standup")){
+			System.out.println("Yay 3");
+		}
+
+		// removing any piece removes the whole event; idle days are dropped
+		if (calendar.removeEvent(monday.plusDays(1), 0) && calendar.getDay(monday) == null
+			&& calendar.getDay(monday.plusDays(1)).size() == 1 && calendar.size() == 2
+			&& calendar.dayCount() == 2 && !calendar.removeEvent(monday, 0)){
+			System.out.println("Yay 4");
+		}
+	}
+}
@@ -0,0 +1,345 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bulk conflict detection over primitive arrays of start and end minutes. Events that only touch do not
+ * overlap, and an event of zero length never conflicts, wherever it sorts among events with the same start.
+ * Given events sorted by start time, an event conflicts with an earlier one when it starts before the
+ * latest end among the events before it, and with a later one when the next event of non-zero length
+ * starts before it ends. Both tests are independent per event once those two neighbours are known, so
+ * they run as a data-parallel kernel. When VectorConflictKernel has been compiled from the vector source
+ * root and the jdk.incubator.vector module is present (java --add-modules jdk.incubator.vector), the
+ * kernel uses its SIMD compares; otherwise it is the scalar loop below, with identical results.
+ * @author Hongjia Hao
+ */
+public class ConflictScanner {
+
+	/**
+	 * A conflict kernel.
+	 */
+	interface Kernel {
+
+		/**
+		 * Mark the conflicting events.
+		 * @param starts	start minutes, ascending
+		 * @param ends	end minutes
+		 * @param previousEnds	previousEnds[i] is the largest end among events 0..i-1, or Integer.MIN_VALUE
+		 * @param nextStarts	nextStarts[i] is the start of the first event of non-zero length after i, or
+		 * 					Integer.MAX_VALUE
+		 * @param conflicting	filled with true for each conflicting event
+		 * @return	number of conflicting events
+		 */
+		int mark(int[] starts, int[] ends, int[] previousEnds, int[] nextStarts, boolean[] conflicting);
+	}
+
+	/**
+	 * The scalar kernel.
+	 */
+	static final Kernel SCALAR = (starts, ends, previousEnds, nextStarts, conflicting) -> {
+		int count = 0;
+		for(int i = 0; i < starts.length; i++){
+			conflicting[i] = starts[i] < ends[i] && (starts[i] < previousEnds[i] || nextStarts[i] < ends[i]);
+			if(conflicting[i]){
+				count++;
+			}
+		}
+		return count;
+	};
+
+	/**
+	 * The kernel in use.
+	 */
+	private static final Kernel KERNEL = loadKernel();
+
+	/**
+	 * Not instantiable.
+	 */
+	private ConflictScanner(){
+	}
+
+	/**
+	 * Use the vector kernel if the Vector API is available.
+	 * @return	kernel
+	 */
+	private static Kernel loadKernel(){
+
+		if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+			try{
+				return (Kernel)Class.forName("VectorConflictKernel").getDeclaredConstructor().newInstance();
+			}
+			catch(ReflectiveOperationException | LinkageError e){
+				// not compiled in; fall through
+			}
+		}
+		return SCALAR;
+	}
+
+	/**
+	 * Report whether the SIMD kernel is in use.
+	 * @return	true if it is
+	 */
+	public static boolean isVectorized(){
+		return KERNEL != SCALAR;
+	}
+
+	/**
+	 * Mark the events that overlap at least one other event. Events that only touch do not overlap, and
+	 * events of zero length overlap nothing.
+	 * @param starts	start minutes, ascending
+	 * @param ends	end minutes
+	 * @param conflicting	filled with true for each conflicting event
+	 * @return	number of conflicting events
+	 * @throws IllegalArgumentException	arrays of the same length
+	 */
+	public static int findConflicts(int[] starts, int[] ends, boolean[] conflicting) throws IllegalArgumentException{
+		return findConflicts(starts, ends, conflicting, KERNEL);
+	}
+
+	/**
+	 * Mark the conflicting events with the given kernel.
+	 * @param starts	start minutes, ascending
+	 * @param ends	end minutes
+	 * @param conflicting	filled with true for each conflicting event
+	 * @param kernel	kernel
+	 * @return	number of conflicting events
+	 * @throws IllegalArgumentException	arrays of the same length
+	 */
+	static int findConflicts(int[] starts, int[] ends, boolean[] conflicting, Kernel kernel) throws IllegalArgumentException{
+
+		if(starts == null || ends == null || conflicting == null
+			|| starts.length != ends.length || conflicting.length != starts.length){
+			throw new IllegalArgumentException("Arrays must have the same length!");
+		}
+		int n = starts.length;
+		int[] previousEnds = new int[n];
+		int latest = Integer.MIN_VALUE;
+		for(int i = 0; i < n; i++){
+			previousEnds[i] = latest;
+			latest = Math.max(latest, ends[i]);
+		}
+		int[] nextStarts = new int[n];
+		int next = Integer.MAX_VALUE;
+		for(int i = n - 1; i >= 0; i--){
+			nextStarts[i] = next;
+			if(starts[i] < ends[i]){
+				next = starts[i];
+			}
+		}
+		return kernel.mark(starts, ends, previousEnds, nextStarts, conflicting);
+	}
+
+	/**
+	 * Count the events of a planner that overlap another of its events.
+	 * @param planner	planner
+	 * @return	number of conflicting events
+	 * @throws IllegalArgumentException	valid planner
+	 */
+	public static int countConflicts(Planner planner) throws IllegalArgumentException{
+
+		if(planner == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		return markConflicts(planner, new boolean[planner.size()]);
+	}
+
+	/**
+	 * Find the events of a planner that overlap another of its events.
+	 * @param planner	planner
+	 * @return	conflicting events in planner order
+	 * @throws IllegalArgumentException	valid planner
+	 */
+	public static Event[] findConflicts(Planner planner) throws IllegalArgumentException{
+
+		if(planner == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		boolean[] conflicting = new boolean[planner.size()];
+		markConflicts(planner, conflicting);
+		List<Event> result = new ArrayList<>();
+		for(int i = 0; i < conflicting.length; i++){
+			if(conflicting[i]){
+				result.add(planner.getEvent(i));
+			}
+		}
+		return result.toArray(new Event[0]);
+	}
+
+	/**
+	 * Mark the events of a planner that overlap another of its events.
+	 * @param planner	planner
+	 * @param conflicting	filled with true for each conflicting event
+	 * @return	number of conflicting events
+	 */
+	private static int markConflicts(Planner planner, boolean[] conflicting){
+
+		int n = planner.size();
+		int[] starts = new int[n];
+		int[] ends = new int[n];
+		for(int i = 0; i < n; i++){
+			Event event = planner.getEvent(i);
+			starts[i] = event.getStart().toMinutes();
+			ends[i] = event.getEnd().toMinutes();
+		}
+		return findConflicts(starts, ends, conflicting);
+	}
+
+	/**
+	 * Validate a batch of events about to be imported into a planner.
+	 * @param planner	planner
+	 * @param batch	events to import
+	 * @return	the events of the batch that overlap an event of the planner or another event of the batch
+	 * @throws IllegalArgumentException	valid planner and batch
+	 */
+	public static Event[] validateImport(Planner planner, Event[] batch) throws IllegalArgumentException{
+
+		if(planner == null || batch == null){
+			throw new IllegalArgumentException("Null planner or batch!");
+		}
+		Event[] sorted = batch.clone();
+		Arrays.sort(sorted);
+		int n = planner.size() + sorted.length;
+		int[] starts = new int[n];
+		int[] ends = new int[n];
+		Event[] imported = new Event[n];
+		int i = 0;
+		int j = 0;
+		for(int k = 0; k < n; k++){
+			Event event;
+			if(j == sorted.length || (i < planner.size() && planner.getEvent(i).compareTo(sorted[j]) <= 0)){
+				event = planner.getEvent(i++);
+			}
+			else{
+				event = sorted[j++];
+				imported[k] = event;
+			}
+			starts[k] = event.getStart().toMinutes();
+			ends[k] = event.getEnd().toMinutes();
+		}
+		boolean[] conflicting = new boolean[n];
+		findConflicts(starts, ends, conflicting);
+		List<Event> result = new ArrayList<>();
+		for(int k = 0; k < n; k++){
+			if(conflicting[k] && imported[k] != null){
+				result.add(imported[k]);
+			}
+		}
+		return result.toArray(new Event[0]);
+	}
+
+	/**
+	 * The object-based approach the kernels replace: compare MyTime objects event by event.
+	 * @param events	events, sorted
+	 * @param conflicting	filled with true for each conflicting event
+	 * @return	number of conflicting events
+	 */
+	static int findConflictsByCompareTo(Event[] events, boolean[] conflicting){
+
+		MyTime[] nextStarts = new MyTime[events.length];
+		MyTime next = null;
+		for(int i = events.length - 1; i >= 0; i--){
+			nextStarts[i] = next;
+			if(events[i].getStart().compareTo(events[i].getEnd()) < 0){
+				next = events[i].getStart();
+			}
+		}
+		int count = 0;
+		MyTime latestEnd = null;
+		for(int i = 0; i < events.length; i++){
+			boolean empty = events[i].getStart().compareTo(events[i].getEnd()) >= 0;
+			boolean earlier = latestEnd != null && events[i].getStart().compareTo(latestEnd) < 0;
+			boolean later = nextStarts[i] != null && nextStarts[i].compareTo(events[i].getEnd()) < 0;
+			conflicting[i] = !empty && (earlier || later);
+			if(conflicting[i]){
+				count++;
+			}
+			if(latestEnd == null || events[i].getEnd().compareTo(latestEnd) > 0){
+				latestEnd = events[i].getEnd();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 4 test cases, then a benchmark of the object, scalar and SIMD approaches on 100k events.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		// 8:00-9:00 overlaps 8:30-8:45; 9:00-10:00 only touches 8:00-9:00
+		int[] starts = {480, 510, 540, 600, 600};
+		int[] ends = {540, 525, 600, 600, 660};
+		boolean[] conflicting = new boolean[5];
+		if (findConflicts(starts, ends, conflicting) == 2 && conflicting[0] && conflicting[1]
+			&& !conflicting[2] && !conflicting[3] && !conflicting[4]){
+			System.out.println("Yay 1");
+		}
+
+		// an event of zero length conflicts with nothing, in either order among equal starts; two events
+		// of non-zero length with the same start conflict in either order
+		boolean orders = true;
+		for(Kernel kernel : new Kernel[]{SCALAR, KERNEL}){
+			boolean[] marks = new boolean[2];
+			orders &= findConflicts(new int[]{600, 600}, new int[]{600, 660}, marks, kernel) == 0
+				&& findConflicts(new int[]{600, 600}, new int[]{660, 600}, marks, kernel) == 0
+				&& findConflicts(new int[]{600, 600}, new int[]{660, 720}, marks, kernel) == 2
+				&& findConflicts(new int[]{600, 600}, new int[]{720, 660}, marks, kernel) == 2;
+		}
+		Event empty = new Event(new MyTime(10), new MyTime(10), "reminder");
+		Event hour = new Event(new MyTime(10), new MyTime(11), "meeting");
+		orders &= findConflictsByCompareTo(new Event[]{empty, hour}, new boolean[2]) == 0
+			&& findConflictsByCompareTo(new Event[]{hour, empty}, new boolean[2]) == 0;
+		if (orders){
+			System.out.println("Yay 2");
+		}
+
+		// per-planner count and import validation
+		Planner day = new Planner();
+		day.addEvent(new Event(new MyTime(9), new MyTime(10), "meeting"));
+		day.addEvent(new Event(new MyTime(9, 30), new MyTime(11), "workshop"));
+		day.addEvent(new Event(new MyTime(13), new MyTime(14), "lunch"));
+		Event clash = new Event(new MyTime(13, 30), new MyTime(14, 30), "call");
+		Event fine = new Event(new MyTime(15), new MyTime(16), "review");
+		Event[] rejected = validateImport(day, new Event[]{fine, clash});
+		if (countConflicts(day) == 2 && rejected.length == 1 && rejected[0] == clash){
+			System.out.println("Yay 3");
+		}
+
+		// the kernels agree
+		Planner planner = PlannerWorkload.populate(100000, 9);
+		Event[] events = planner.getEventsInRange(new MyTime(), new MyTime(23, 59));
+		starts = new int[events.length];
+		ends = new int[events.length];
+		for(int i = 0; i < events.length; i++){
+			starts[i] = events[i].getStart().toMinutes();
+			ends[i] = events[i].getEnd().toMinutes();
+		}
+		boolean[] expected = new boolean[events.length];
+		boolean[] scalar = new boolean[events.length];
+		boolean[] actual = new boolean[events.length];
+		int count = findConflictsByCompareTo(events, expected);
+		if (events.length == planner.size() && findConflicts(starts, ends, scalar, SCALAR) == count
+			&& findConflicts(starts, ends, actual) == count
+			&& Arrays.equals(expected, scalar) && Arrays.equals(expected, actual)){
+			System.out.println("Yay 4");
+		}
+
+		System.out.println("vector kernel " + (isVectorized() ? "enabled" : "not available, using scalar fallback"));
+		String[] names = {"MyTime.compareTo", "scalar kernel", "vector kernel"};
+		for(int approach = 0; approach < (isVectorized() ? 3 : 2); approach++){
+			long best = Long.MAX_VALUE;
+			for(int round = 0; round < 200; round++){
+				long begin = System.nanoTime();
+				if(approach == 0){
+					findConflictsByCompareTo(events, actual);
+				}
+				else{
+					findConflicts(starts, ends, actual, (approach == 1) ? SCALAR : KERNEL);
+				}
+				best = Math.min(best, System.nanoTime() - begin);
+			}
+			System.out.printf("%-17s %8.1f us per %d events (%.2f ns/event)%n", names[approach], best / 1e3,
+				events.length, (double)best / events.length);
+		}
+	}
+}
@@ -1,10 +1,31 @@
+import java.util.Comparator;
+
 /**
  * The implementation of an event with a starting time, an ending time, and a description. It
  * also implements Comparable. The ordering of two events is determined by the ordering of their starting times.
+ * Other orderings are available as Comparators; each breaks ties by starting time.
  * @author Hongjia Hao
  */
 public class Event implements Comparable<Event> {
 
+	/**
+	 * Ordering by end time.
+	 */
+	public static final Comparator<Event> BY_END = Comparator.comparing(Event::getEnd)
+		.thenComparing(Event::getStart);
+
+	/**
+	 * Ordering by duration, shortest first.
+	 */
+	public static final Comparator<Event> BY_DURATION = Comparator.comparingInt(
+		(Event event) -> event.getStart().getDuration(event.getEnd())).thenComparing(Event::getStart);
+
+	/**
+	 * Ordering by description, alphabetically.
+	 */
+	public static final Comparator<Event> BY_DESCRIPTION = Comparator.comparing(Event::getDescription)
+		.thenComparing(Event::getStart);
+
 	/**
 	 * Start time.
 	 */
@@ -1,12 +1,14 @@
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * The implementation of a sorted dynamic array list. 
  * implement this class as a generic class to practice that concept. It will be used as the storage of events in the day
- * planner.
+ * planner. Elements are ordered by their natural ordering, or by a Comparator given to the constructor.
  * @author Hongjia Hao
  * @param <T> Generic class
  */
-public class MySortedArray<T extends Comparable<T>> {
+public class MySortedArray<T extends Comparable<T>> implements SortedStorage<T> {
 	/**
 	 * Default initial capacity.
 	 */
@@ -22,6 +24,21 @@ public class MySortedArray<T extends Comparable<T>> {
 	 * Size.
 	 */
 	private int size;
+
+	/**
+	 * Ordering of the elements, or null for their natural ordering.
+	 */
+	private Comparator<? super T> comparator;
+
+	/**
+	 * Whether add(value) appends to the unsorted tail instead of inserting in order.
+	 */
+	private boolean deferredSort;
+
+	/**
+	 * Number of elements at the end of data that have been appended but not merged yet.
+	 */
+	private int unsorted;
 	
 	/**
 	 * Constructor.
@@ -49,6 +66,51 @@ public class MySortedArray<T extends Comparable<T>> {
 		this.size = 0;
 		
 	}
+
+	/**
+	 * Constructor with the ordering to keep the elements in.
+	 * @param comparator	ordering, or null for the natural ordering
+	 */
+	public MySortedArray(Comparator<? super T> comparator){
+
+		this();
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Report the ordering of the elements.
+	 * @return	comparator, or null for the natural ordering
+	 */
+	@Override
+	public Comparator<? super T> comparator(){
+		return comparator;
+	}
+
+	/**
+	 * Create an empty array with the same ordering and the same deferred sorting.
+	 * @return	empty array
+	 */
+	@Override
+	public MySortedArray<T> emptyCopy(){
+
+		MySortedArray<T> copy = new MySortedArray<T>(comparator);
+		copy.deferredSort = deferredSort;
+		return copy;
+	}
+
+	/**
+	 * Compare two elements in the ordering of this array.
+	 * @param a	first element
+	 * @param b	second element
+	 * @return	result of compare
+	 */
+	private int compare(T a, T b){
+
+		if(comparator == null){
+			return a.compareTo(b);
+		}
+		return comparator.compare(a, b);
+	}
 	
 	/**
 	 * Report the current number of elements.
@@ -69,6 +131,55 @@ public class MySortedArray<T extends Comparable<T>> {
 		return data.length; 
 	}
 
+	/**
+	 * Turn deferred sorting on or off. While it is on, add(value) only appends the value to an unsorted
+	 * tail; the tail is sorted and merged into the array in one go by the next operation that reads or
+	 * changes positions (get, replace, add at an index, addAll, delete). The order readers see is exactly
+	 * the one repeated ordered inserts would have produced. Turning it off merges the tail right away.
+	 * @param deferredSort	true to defer sorting
+	 */
+	public void setDeferredSort(boolean deferredSort){
+
+		this.deferredSort = deferredSort;
+		if(deferredSort == false){
+			this.flush();
+		}
+	}
+
+	/**
+	 * Report whether sorting is deferred.
+	 * @return	true if it is
+	 */
+	public boolean isDeferredSort(){
+		return deferredSort;
+	}
+
+	/**
+	 * Sort the unsorted tail and merge it into the sorted part. The sort is stable and, on ties, the
+	 * merge keeps elements already in the sorted part first, so equal values end up in insertion order.
+	 */
+	private void flush(){
+
+		if(unsorted == 0){
+			return;
+		}
+		int body = this.size() - unsorted;
+		Arrays.sort(data, body, this.size(), comparator);
+		T[] tail = Arrays.copyOfRange(data, body, this.size());
+		int i = body - 1;
+		int j = tail.length - 1;
+		int k = this.size() - 1;
+		while(j >= 0){
+			if(i >= 0 && this.compare(data[i], tail[j]) > 0){
+				data[k--] = data[i--];
+			}
+			else{
+				data[k--] = tail[j--];
+			}
+		}
+		unsorted = 0;
+	}
+
 	/**
 	 * Insert the given value into the array and keep the array _SORTED_ in ascending order.
 	 * @param value	given value
@@ -85,14 +196,19 @@ public class MySortedArray<T extends Comparable<T>> {
 				throw new IllegalStateException("Cannot add: capacity upper-bound reached!");
 			}
 		}
-		if(this.size() == 0){
+		if(deferredSort){
+			data[this.size()] = value;
+			this.size += 1;
+			unsorted += 1;
+		}
+		else if(this.size() == 0){
 			data[0] = value;
 			this.size += 1;
 		}
 		else{
 			int index = this.size();
 			for(int i = 0; i < this.size(); i++){
-				if(value.compareTo(this.data[i]) < 0){
+				if(this.compare(value, this.data[i]) < 0){
 					index = i;
 					break;
 				}
@@ -106,6 +222,46 @@ public class MySortedArray<T extends Comparable<T>> {
 
 	}
 
+	/**
+	 * Insert all the given values with one merge pass, keeping the array _SORTED_. Values equal to
+	 * existing elements end up after them, and equal values among those given keep their order,
+	 * exactly as if each had been inserted with add(value) in turn.
+	 * @param values	given values
+	 * @throws IllegalStateException	maxium capacity
+	 * @throws IllegalArgumentException	vaild values
+	 */
+	public void addAll(T[] values) throws IllegalStateException, IllegalArgumentException{
+
+		if(values == null){
+			throw new IllegalArgumentException("Cannot add: null values!");
+		}
+		for(T value : values){
+			if(value == null){
+				throw new IllegalArgumentException("Cannot add: null value!");
+			}
+		}
+		this.flush();
+		T[] sorted = values.clone();
+		Arrays.sort(sorted, comparator);
+		while(this.capacity() - this.size() < sorted.length){
+			if(this.doubleCapacity() == false){
+				throw new IllegalStateException("Cannot add: capacity upper-bound reached!");
+			}
+		}
+		int i = this.size() - 1;
+		int j = sorted.length - 1;
+		int k = this.size() + sorted.length - 1;
+		while(j >= 0){
+			if(i >= 0 && this.compare(data[i], sorted[j]) > 0){
+				data[k--] = data[i--];
+			}
+			else{
+				data[k--] = sorted[j--];
+			}
+		}
+		this.size += sorted.length;
+	}
+
 	/**
 	 * Return the item at the given index.
 	 * @param index	index
@@ -114,6 +270,7 @@ public class MySortedArray<T extends Comparable<T>> {
 	 */
 	public T get(int index) throws IndexOutOfBoundsException{
 		
+		this.flush();
 		if(index >= this.size() || index < 0){
 			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
 		}
@@ -131,6 +288,7 @@ public class MySortedArray<T extends Comparable<T>> {
 	 */
 	public boolean replace(int index, T value) throws IndexOutOfBoundsException, IllegalArgumentException{
 		
+		this.flush();
 		if(index >= this.size() || index < 0){
 			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
 		}
@@ -139,20 +297,23 @@ public class MySortedArray<T extends Comparable<T>> {
 		}
 		T temp = data[index];
 		data[index] = value;
+		if(this.size() == 1){
+			return true;
+		}
 		if(index == 0){
-			if(value.compareTo(data[1]) > 0){
+			if(this.compare(value, data[1]) > 0){
 				data[index] = temp;
 				return false;
 			}
 		}
 		else if(index == this.size() - 1){
-			if(value.compareTo(data[this.size() - 2]) < 0){
+			if(this.compare(value, data[this.size() - 2]) < 0){
 				data[index] = temp;
 				return false;
 			}
 		}
 		else{
-			if(value.compareTo(data[index - 1]) < 0 || value.compareTo(data[index + 1]) > 0){
+			if(this.compare(value, data[index - 1]) < 0 || this.compare(value, data[index + 1]) > 0){
 				data[index] = temp;
 				return false;
 			}
@@ -173,6 +334,7 @@ public class MySortedArray<T extends Comparable<T>> {
 	 */
 	public boolean add(int index, T value) throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException{
 		
+		this.flush();
 		if(index == 0 && this.size() == 0){
 			this.add(value);
 			return true;
@@ -184,17 +346,17 @@ public class MySortedArray<T extends Comparable<T>> {
 			throw new IllegalArgumentException("Cannot add: null value!");
 		}
 		if(index == 0){
-			if(value.compareTo(data[1]) > 0){
+			if(this.compare(value, data[0]) > 0){
 				return false;
 			}
 		}
 		else if(index == this.size()){
-			if(value.compareTo(data[this.size() - 1]) < 0){
+			if(this.compare(value, data[this.size() - 1]) < 0){
 				return false;
 			}
 		}
 		else{
-			if(value.compareTo(data[index - 1]) < 0 || value.compareTo(data[index]) > 0){
+			if(this.compare(value, data[index - 1]) < 0 || this.compare(value, data[index]) > 0){
 				return false;
 			}
 		}
@@ -203,7 +365,7 @@ public class MySortedArray<T extends Comparable<T>> {
 				throw new IllegalStateException("Cannot add: capacity upper-bound reached!");
 			}
 		}
-		for(int i = this.size(); i >= index; i--){
+		for(int i = this.size(); i > index; i--){
 			data[i] = data[i - 1];
 		}
 		data[index] = value;
@@ -219,11 +381,12 @@ public class MySortedArray<T extends Comparable<T>> {
 	 */
 	public T delete(int index) throws IndexOutOfBoundsException{
 		
-		T result = data[index];
-		int oldSize = this.size();
+		this.flush();
 		if(index >= this.size() || index < 0){
 			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
 		}
+		T result = data[index];
+		int oldSize = this.size();
 		for(int i = index + 1; i < this.size(); i++){
 			data[i - 1] = data[i];
 		}
@@ -291,3 +454,81 @@ public class MySortedArray<T extends Comparable<T>> {
 		
 
 	}
+
+	/**
+	 * 4 test cases, then the time to ingest 20k events with and without deferred sorting.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		// deferred ingestion gives the same order, equal keys in insertion order
+		PlannerWorkload workload = new PlannerWorkload(11);
+		MySortedArray<Event> eager = new MySortedArray<>();
+		MySortedArray<Event> deferred = new MySortedArray<>();
+		deferred.setDeferredSort(true);
+		for(int i = 0; i < 5000; i++){
+			workload.next(0);
+			Event event = workload.newEvent();
+			eager.add(event);
+			deferred.add(event);
+			if(i % 1000 == 999){
+				deferred.get(0);
+			}
+		}
+		boolean same = eager.size() == deferred.size();
+		for(int i = 0; same && i < eager.size(); i++){
+			same = eager.get(i) == deferred.get(i);
+		}
+		if (same){
+			System.out.println("Yay 1");
+		}
+
+		// appends are counted right away and merged on the first read
+		MySortedArray<Event> day = new MySortedArray<>();
+		day.setDeferredSort(true);
+		Event lunch = new Event(new MyTime(12), new MyTime(13), "lunch");
+		Event breakfast = new Event(new MyTime(7), new MyTime(8), "breakfast");
+		Event brunch = new Event(new MyTime(12), new MyTime(12, 30), "brunch");
+		day.add(lunch);
+		day.add(breakfast);
+		day.add(brunch);
+		if (day.size() == 3 && day.get(0) == breakfast && day.get(1) == lunch && day.get(2) == brunch){
+			System.out.println("Yay 2");
+		}
+
+		// deletes see the merged order; turning deferral off merges the tail
+		day.add(new Event(new MyTime(6), new MyTime(7), "jogging"));
+		Event removed = day.delete(0);
+		day.add(new Event(new MyTime(5), new MyTime(6), "wake up"));
+		day.setDeferredSort(false);
+		if (removed.getDescription().equals("jogging") && day.get(0).getDescription().equals("wake up")
+			&& !day.isDeferredSort() && day.size() == 4){
+			System.out.println("Yay 3");
+		}
+
+		// a comparator replaces the natural ordering everywhere
+		MySortedArray<Event> byEnd = new MySortedArray<>(Event.BY_END);
+		byEnd.add(new Event(new MyTime(8), new MyTime(12), "morning"));
+		byEnd.add(new Event(new MyTime(10), new MyTime(11), "call"));
+		byEnd.addAll(new Event[]{new Event(new MyTime(9), new MyTime(9, 30), "standup")});
+		if (byEnd.comparator() == Event.BY_END && byEnd.get(0).getDescription().equals("standup")
+			&& byEnd.get(2).getDescription().equals("morning")
+			&& !byEnd.add(0, new Event(new MyTime(7), new MyTime(13), "late"))){
+			System.out.println("Yay 4");
+		}
+
+		for(int round = 0; round < 2; round++){
+			MySortedArray<Event> array = new MySortedArray<>();
+			array.setDeferredSort(round == 1);
+			workload = new PlannerWorkload(5);
+			long begin = System.nanoTime();
+			for(int i = 0; i < 20000; i++){
+				workload.next(0);
+				array.add(workload.newEvent());
+			}
+			array.get(0);
+			System.out.printf("%s: 20000 adds and one read in %.1f ms%n", (round == 0) ? "ordered insert" : "deferred sort",
+				(System.nanoTime() - begin) / 1e6);
+		}
+	}
+}
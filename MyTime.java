@@ -6,6 +6,16 @@
  */
 public class MyTime implements Comparable<MyTime> {
 
+	/**
+	 * Minutes in a day.
+	 */
+	public static final int MINUTES_PER_DAY = 24 * 60;
+
+	/**
+	 * Last minute of the day, 23:59, which is also the latest an event can end at.
+	 */
+	public static final int END_OF_DAY = MINUTES_PER_DAY - 1;
+
 	/**
 	 * Hour.
 	 */
@@ -156,6 +166,28 @@ public class MyTime implements Comparable<MyTime> {
 		}
 	}
 
+	/**
+	 * Report this time as the number of minutes since 00:00.
+	 * @return	minute of the day within [0, 1439]
+	 */
+	public int toMinutes(){
+		return this.getHour() * 60 + this.getMin();
+	}
+
+	/**
+	 * Create a time from the number of minutes since 00:00.
+	 * @param minutes	minute of the day
+	 * @return	time
+	 * @throws IllegalArgumentException	valid minutes within [0, 1439]
+	 */
+	public static MyTime fromMinutes(int minutes) throws IllegalArgumentException{
+
+		if(minutes < 0 || minutes >= MINUTES_PER_DAY){
+			throw new IllegalArgumentException("Minutes must be within [0, 1439]!");
+		}
+		return new MyTime(minutes / 60, minutes % 60);
+	}
+
 	/**
 	 * ToString method.
 	 * @return HH:MM
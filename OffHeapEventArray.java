@@ -0,0 +1,471 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * An off-heap storage of events for the day planner. Each event is packed into one fixed-width 8-byte
+ * record, start minute (16 bits), end minute (16 bits) and a reference into a table of descriptions
+ * (32 bits), in a direct buffer outside the Java heap. The garbage collector never has to scan or copy the
+ * records, however many there are. Searching and shifting work on the records directly; an Event is only
+ * created when one is read, and it is a copy, so changing it has no effect until it is written back with
+ * replace(). Descriptions are interned and reference-counted, so a description shared by many events is
+ * stored once.
+ * @author Hongjia Hao
+ */
+public class OffHeapEventArray implements SortedStorage<Event> {
+
+	/**
+	 * Default initial capacity.
+	 */
+	private static final int DEFAULT_CAPACITY = 2;
+
+	/**
+	 * Largest number of records a buffer can hold.
+	 */
+	private static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / Long.BYTES;
+
+	/**
+	 * Records.
+	 */
+	private LongBuffer records;
+
+	/**
+	 * Size.
+	 */
+	private int size;
+
+	/**
+	 * Description ids, by description.
+	 */
+	private final HashMap<String, Integer> descriptionIds;
+
+	/**
+	 * Descriptions, by id.
+	 */
+	private String[] descriptions;
+
+	/**
+	 * Number of records referring to each description id.
+	 */
+	private int[] references;
+
+	/**
+	 * Description ids free for reuse.
+	 */
+	private final ArrayDeque<Integer> freeIds;
+
+	/**
+	 * Number of description ids handed out so far.
+	 */
+	private int nextId;
+
+	/**
+	 * Constructor.
+	 */
+	public OffHeapEventArray(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * @param initialCapacity	capacity
+	 * @throws IllegalArgumentException	capacity >= 2
+	 */
+	public OffHeapEventArray(int initialCapacity) throws IllegalArgumentException{
+
+		if(initialCapacity < 2 || initialCapacity > MAX_CAPACITY){
+			throw new IllegalArgumentException("Capacity must be at least 2!");
+		}
+		this.records = allocate(initialCapacity);
+		this.size = 0;
+		this.descriptionIds = new HashMap<>();
+		this.descriptions = new String[DEFAULT_CAPACITY];
+		this.references = new int[DEFAULT_CAPACITY];
+		this.freeIds = new ArrayDeque<>();
+		this.nextId = 0;
+	}
+
+	/**
+	 * Allocate an off-heap buffer of records.
+	 * @param capacity	number of records
+	 * @return	buffer
+	 */
+	private static LongBuffer allocate(int capacity){
+		return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+	}
+
+	/**
+	 * Report the current number of events.
+	 * @return size
+	 */
+	@Override
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Report max number of events before the next expansion.
+	 * @return	capacity
+	 */
+	@Override
+	public int capacity(){
+		return records.capacity();
+	}
+
+	/**
+	 * Report the ordering of the events, which is always by start time.
+	 * @return	null, for the natural ordering
+	 */
+	@Override
+	public Comparator<? super Event> comparator(){
+		return null;
+	}
+
+	/**
+	 * Create an empty array. There are no options to copy.
+	 * @return	empty array
+	 */
+	@Override
+	public OffHeapEventArray emptyCopy(){
+		return new OffHeapEventArray();
+	}
+
+	/**
+	 * Start minute of a record.
+	 * @param index	index
+	 * @return	minute
+	 */
+	private int start(int index){
+		return (int)(records.get(index) >>> 48);
+	}
+
+	/**
+	 * Intern a description, taking a reference to it.
+	 * @param description	description
+	 * @return	id
+	 */
+	private int intern(String description){
+
+		Integer id = descriptionIds.get(description);
+		if(id == null){
+			id = freeIds.isEmpty() ? nextId++ : freeIds.pop();
+			if(id == descriptions.length){
+				descriptions = Arrays.copyOf(descriptions, id * 2);
+				references = Arrays.copyOf(references, id * 2);
+			}
+			descriptions[id] = description;
+			descriptionIds.put(description, id);
+		}
+		references[id]++;
+		return id;
+	}
+
+	/**
+	 * Drop a reference to a description, freeing it when no record refers to it any more.
+	 * @param id	id
+	 */
+	private void release(int id){
+
+		references[id]--;
+		if(references[id] == 0){
+			descriptionIds.remove(descriptions[id]);
+			descriptions[id] = null;
+			freeIds.push(id);
+		}
+	}
+
+	/**
+	 * Pack an event into a record, interning its description.
+	 * @param event	event
+	 * @return	record
+	 */
+	private long encode(Event event){
+		return ((long)event.getStart().toMinutes() << 48) | ((long)event.getEnd().toMinutes() << 32)
+			| (this.intern(event.getDescription()) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Unpack a record into a new Event.
+	 * @param record	record
+	 * @return	event
+	 */
+	private Event decode(long record){
+		return new Event(MyTime.fromMinutes((int)(record >>> 48)), MyTime.fromMinutes((int)(record >>> 32) & 0xFFFF),
+			descriptions[(int)record]);
+	}
+
+	/**
+	 * Find the index of the first record starting after the given minute.
+	 * @param minute	start minute
+	 * @return	index within [0, size]
+	 */
+	private int upperBound(int minute){
+
+		int low = 0;
+		int high = size;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(this.start(mid) <= minute){
+				low = mid + 1;
+			}
+			else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Make room for at least the given number of records.
+	 * @param needed	number of records
+	 * @throws IllegalStateException	maxium capacity
+	 */
+	private void ensureCapacity(int needed) throws IllegalStateException{
+
+		if(needed <= this.capacity()){
+			return;
+		}
+		if(needed > MAX_CAPACITY || needed < 0){
+			throw new IllegalStateException("Cannot add: capacity upper-bound reached!");
+		}
+		int capacity = this.capacity();
+		while(capacity < needed){
+			capacity = (int)Math.min((long)capacity * 2, MAX_CAPACITY);
+		}
+		this.resize(capacity);
+	}
+
+	/**
+	 * Move the records into a new buffer.
+	 * @param capacity	new capacity
+	 */
+	private void resize(int capacity){
+
+		LongBuffer temp = allocate(capacity);
+		temp.put(0, records, 0, size);
+		records = temp;
+	}
+
+	/**
+	 * Insert the given event and keep the records sorted by start time, after any events starting at the same time.
+	 * @param value	given event
+	 * @throws IllegalStateException	maxium capacity
+	 * @throws IllegalArgumentException	vaild event
+	 */
+	@Override
+	public void add(Event value) throws IllegalStateException, IllegalArgumentException{
+
+		if(value == null){
+			throw new IllegalArgumentException("Cannot add: null value!");
+		}
+		this.insert(this.upperBound(value.getStart().toMinutes()), value);
+	}
+
+	/**
+	 * Insert the given event at the given index if that keeps the records sorted.
+	 * @param index	index
+	 * @param value event
+	 * @return	true if sucessed, false if not
+	 * @throws IndexOutOfBoundsException	vaild index
+	 * @throws IllegalArgumentException		vaild event
+	 * @throws IllegalStateException		vaild capacity
+	 */
+	@Override
+	public boolean add(int index, Event value) throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException{
+
+		if(index > size || index < 0){
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
+		}
+		if(value == null){
+			throw new IllegalArgumentException("Cannot add: null value!");
+		}
+		int start = value.getStart().toMinutes();
+		if((index > 0 && this.start(index - 1) > start) || (index < size && start > this.start(index))){
+			return false;
+		}
+		this.insert(index, value);
+		return true;
+	}
+
+	/**
+	 * Shift the records from index on up by one and write the event at index.
+	 * @param index	index
+	 * @param value	event
+	 * @throws IllegalStateException	maxium capacity
+	 */
+	private void insert(int index, Event value) throws IllegalStateException{
+
+		this.ensureCapacity(size + 1);
+		records.put(index + 1, records, index, size - index);
+		records.put(index, this.encode(value));
+		size++;
+	}
+
+	/**
+	 * Insert all the given events with one merge pass, keeping the records sorted.
+	 * @param values	given events
+	 * @throws IllegalStateException	maxium capacity
+	 * @throws IllegalArgumentException	vaild events
+	 */
+	@Override
+	public void addAll(Event[] values) throws IllegalStateException, IllegalArgumentException{
+
+		if(values == null){
+			throw new IllegalArgumentException("Cannot add: null values!");
+		}
+		for(Event value : values){
+			if(value == null){
+				throw new IllegalArgumentException("Cannot add: null value!");
+			}
+		}
+		Event[] sorted = values.clone();
+		Arrays.sort(sorted);
+		this.ensureCapacity(size + sorted.length);
+		int i = size - 1;
+		int j = sorted.length - 1;
+		int k = size + sorted.length - 1;
+		while(j >= 0){
+			if(i >= 0 && this.start(i) > sorted[j].getStart().toMinutes()){
+				records.put(k--, records.get(i--));
+			}
+			else{
+				records.put(k--, this.encode(sorted[j--]));
+			}
+		}
+		size += sorted.length;
+	}
+
+	/**
+	 * Return a copy of the event at the given index.
+	 * @param index	index
+	 * @return		event
+	 * @throws IndexOutOfBoundsException	vaild index
+	 */
+	@Override
+	public Event get(int index) throws IndexOutOfBoundsException{
+
+		if(index >= size || index < 0){
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
+		}
+		return this.decode(records.get(index));
+	}
+
+	/**
+	 * Overwrite the record at the given index with the given event if that keeps the records sorted.
+	 * @param index	index
+	 * @param value	event
+	 * @return	true if sucessed, false if not
+	 * @throws IndexOutOfBoundsException	vaild index
+	 * @throws IllegalArgumentException		vaild event
+	 */
+	@Override
+	public boolean replace(int index, Event value) throws IndexOutOfBoundsException, IllegalArgumentException{
+
+		if(index >= size || index < 0){
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds!");
+		}
+		if(value == null){
+			throw new IllegalArgumentException("Cannot add: null value!");
+		}
+		int start = value.getStart().toMinutes();
+		if((index > 0 && this.start(index - 1) > start) || (index < size - 1 && start > this.start(index + 1))){
+			return false;
+		}
+		int oldId = (int)records.get(index);
+		records.put(index, this.encode(value));
+		this.release(oldId);
+		return true;
+	}
+
+	/**
+	 * Remove and return the event at the given index. Shift records.
+	 * @param index	index
+	 * @return	deleted event
+	 * @throws IndexOutOfBoundsException	vaild index
+	 */
+	@Override
+	public Event delete(int index) throws IndexOutOfBoundsException{
+
+		Event result = this.get(index);
+		this.release((int)records.get(index));
+		records.put(index, records, index + 1, size - index - 1);
+		size--;
+		if(size <= this.capacity() / 3 && this.capacity() > DEFAULT_CAPACITY){
+			this.resize(Math.max(DEFAULT_CAPACITY, this.capacity() / 2));
+		}
+		return result;
+	}
+
+	/**
+	 * 3 test cases, then a comparison of heap usage for one million events.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		// the same edits give the same planner on and off the heap
+		Planner onHeap = new Planner();
+		Planner offHeap = new Planner(new OffHeapEventArray());
+		PlannerWorkload workload = new PlannerWorkload(3);
+		for(int i = 0; i < 20000; i++){
+			int op = workload.next(onHeap.size());
+			for(Planner planner : new Planner[]{onHeap, offHeap}){
+				if(op == PlannerWorkload.ADD){
+					planner.addEvent(workload.newEvent());
+				}
+				else if(op == PlannerWorkload.MOVE){
+					planner.moveEvent(workload.getIndex(), workload.getTime());
+				}
+				else if(op == PlannerWorkload.DURATION){
+					planner.changeDuration(workload.getIndex(), workload.getDuration());
+				}
+				else if(op == PlannerWorkload.REMOVE){
+					planner.removeEvent(workload.getIndex());
+				}
+				else{
+					planner.changeDescription(workload.getIndex(), "event " + workload.getDuration());
+				}
+			}
+		}
+		if (onHeap.size() > 0 && onHeap.toString().equals(offHeap.toString())){
+			System.out.println("Yay 1");
+		}
+
+		// reads are copies until written back
+		OffHeapEventArray storage = new OffHeapEventArray();
+		storage.add(new Event(new MyTime(9), new MyTime(10), "meeting"));
+		storage.add(new Event(new MyTime(8), new MyTime(9), "meeting"));
+		Event copy = storage.get(1);
+		copy.setDescription("standup");
+		if (storage.get(1).getDescription().equals("meeting") && storage.replace(1, copy)
+			&& storage.get(1).getDescription().equals("standup") && storage.descriptionIds.size() == 2
+			&& !storage.replace(0, new Event(new MyTime(11), new MyTime(12)))){
+			System.out.println("Yay 2");
+		}
+
+		// descriptions are shared and freed with their last reference
+		storage.delete(1);
+		storage.delete(0);
+		if (storage.size() == 0 && storage.descriptionIds.isEmpty() && storage.capacity() == 2){
+			System.out.println("Yay 3");
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		for(int round = 0; round < 2; round++){
+			Planner planner = (round == 0) ? new Planner() : new Planner(new OffHeapEventArray());
+			System.gc();
+			long before = runtime.totalMemory() - runtime.freeMemory();
+			planner.addEvents(PlannerWorkload.populate(1000000, 5).getEventsInRange(new MyTime(), new MyTime(23, 59)));
+			if(planner.size() != 1000000){
+				throw new IllegalStateException("Range missed " + (1000000 - planner.size()) + " events!");
+			}
+			System.gc();
+			long after = runtime.totalMemory() - runtime.freeMemory();
+			System.out.printf("%s: %d events, %.1f MB of heap%n", (round == 0) ? "on heap" : "off heap",
+				planner.size(), (after - before) / 1e6);
+		}
+	}
+}
@@ -1,7 +1,12 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * The implementation of a day planner. It stores a collection of events in ascending order
  * of their starting times. The planner supports multiple operations for maintenance, including adding a new event,
- * deleting an event, and updating an event.
+ * deleting an event, and updating an event. Secondary indexes can keep the events in other orders as well, such
+ * as Event.BY_END, Event.BY_DURATION or Event.BY_DESCRIPTION, so that they can be read without sorting.
  * @author Hongjia Hao
  */
 public class Planner{
@@ -9,7 +14,22 @@ public class Planner{
 	/**
 	 * Underlying array of events.
 	 */
-	private MySortedArray<Event> events;
+	private SortedStorage<Event> events;
+
+	/**
+	 * Mutation counter, incremented by every change made through the planner.
+	 */
+	private long version;
+
+	/**
+	 * Undo/redo log, or null when history is disabled.
+	 */
+	private PlannerHistory history;
+
+	/**
+	 * Secondary indexes, each holding the events in the order of its comparator.
+	 */
+	private List<MySortedArray<Event>> indexes;
 	
 	/**
 	 * Constructor with no arguments.
@@ -17,9 +37,29 @@ public class Planner{
 	public Planner(){
 	
 		this.events = new MySortedArray<>();
+		this.indexes = new ArrayList<>();
 		
 	}
 
+	/**
+	 * Constructor with the storage to keep the events in, e.g. an OffHeapEventArray. With storages
+	 * that hand out copies, the events returned by getEvent() must be changed through the planner.
+	 * The storage must keep the events in start time order; other orders belong in enableIndex().
+	 * @param storage	storage
+	 * @throws IllegalArgumentException	valid storage in natural ordering
+	 */
+	public Planner(SortedStorage<Event> storage) throws IllegalArgumentException{
+
+		if(storage == null){
+			throw new IllegalArgumentException("Null storage!");
+		}
+		if(storage.comparator() != null){
+			throw new IllegalArgumentException("Storage must be in start time order!");
+		}
+		this.events = storage;
+		this.indexes = new ArrayList<>();
+	}
+
 	/**
 	 * Return the number of events in the list.
 	 * @return	size
@@ -27,7 +67,25 @@ public class Planner{
 	public int size(){
 		return events.size(); 
 	}
+
+	/**
+	 * Return the number of events the underlying storage can hold before it grows.
+	 * @return	capacity
+	 */
+	public int capacity(){
+		return events.capacity();
+	}
 	
+	/**
+	 * Report the mutation version. It changes whenever the planner is changed through one of its
+	 * methods, so derived data computed at one version stays valid while the version is unchanged.
+	 * Changing an Event obtained from getEvent() directly does not change the version.
+	 * @return	version
+	 */
+	public long getVersion(){
+		return version;
+	}
+
 	/**
 	 * ToString method.
 	 * @return string
@@ -55,10 +113,52 @@ public class Planner{
 		if(event == null){
 			throw new IllegalArgumentException("Null Event object!");
 		}
-		events.add(event);
+		if(history != null){
+			int index = this.upperBound(event.getStart());
+			events.add(event);
+			history.record(new PlannerHistory.Edit(PlannerHistory.ADD, index, index, event, 0, 0, null, null));
+		}
+		else{
+			events.add(event);
+		}
+		this.indexEvent(event);
+		version++;
 
 	}
 	
+	/**
+	 * Add a batch of new events into the list with a single merge. With history enabled the events
+	 * are added one by one instead, as a single edit group, so that the batch can be undone.
+	 * @param batch	events
+	 * @throws IllegalArgumentException vaild events
+	 */
+	public void addEvents(Event[] batch) throws IllegalArgumentException{
+
+		if(batch == null){
+			throw new IllegalArgumentException("Null Event array!");
+		}
+		if(history != null){
+			for(Event event : batch){
+				if(event == null){
+					throw new IllegalArgumentException("Null Event object!");
+				}
+			}
+			this.beginEdit();
+			for(Event event : batch){
+				this.addEvent(event);
+			}
+			this.endEdit();
+			return;
+		}
+		events.addAll(batch);
+		for(MySortedArray<Event> index : indexes){
+			index.addAll(batch);
+		}
+		if(batch.length > 0){
+			version++;
+		}
+	}
+
 	/**
 	 * Move the event at index to be start at newStart.
 	 * @param index	index
@@ -73,18 +173,26 @@ public class Planner{
 		if(newStart == null){
 			return false;
 		}
-		if(events.get(index).moveStart(newStart) == false){
+		Event temp = events.get(index);
+		int oldStart = temp.getStart().toMinutes();
+		this.unindexEvent(temp);
+		if(temp.moveStart(newStart) == false){
+			this.indexEvent(temp);
 			return false;
 		}
-		Event temp = events.get(index);
+		this.indexEvent(temp);
+		version++;
 		events.delete(index);
-		if(events.add(index, temp) == true){
-			return true;
+		int target = index;
+		if(events.add(index, temp) == false){
+			target = this.upperBound(temp.getStart());
+			events.add(target, temp);
 		}
-		else{
-			events.add(temp);
-			return true;
+		if(history != null){
+			history.record(new PlannerHistory.Edit(PlannerHistory.MOVE, index, target, null,
+					oldStart, newStart.toMinutes(), null, null));
 		}
+		return true;
 	}
 
 	/**
@@ -101,7 +209,21 @@ public class Planner{
 		if(minute < 0){
 			return false;
 		}		
-		return events.get(index).changeDuration(minute); 
+		Event event = events.get(index);
+		int oldDuration = event.getStart().getDuration(event.getEnd());
+		this.unindexEvent(event);
+		if(event.changeDuration(minute) == false){
+			this.indexEvent(event);
+			return false;
+		}
+		this.indexEvent(event);
+		events.replace(index, event);
+		if(history != null){
+			history.record(new PlannerHistory.Edit(PlannerHistory.DURATION, index, index, null,
+					oldDuration, minute, null, null));
+		}
+		version++;
+		return true;
 	
 	}
 
@@ -116,7 +238,17 @@ public class Planner{
 		if(index < 0 || index >= events.size()){
 			return false;
 		}
-		events.get(index).setDescription(description);
+		Event event = events.get(index);
+		String oldDescription = event.getDescription();
+		this.unindexEvent(event);
+		event.setDescription(description);
+		this.indexEvent(event);
+		events.replace(index, event);
+		if(history != null){
+			history.record(new PlannerHistory.Edit(PlannerHistory.DESCRIPTION, index, index, null,
+					0, 0, oldDescription, event.getDescription()));
+		}
+		version++;
 		return true;
 	}
 	
@@ -130,9 +262,349 @@ public class Planner{
 		if(index < 0 || index >= events.size()){
 			return false;
 		}
-		events.delete(index); 
+		Event removed = events.delete(index);
+		this.unindexEvent(removed);
+		if(history != null){
+			history.record(new PlannerHistory.Edit(PlannerHistory.REMOVE, index, index, removed, 0, 0, null, null));
+		}
+		version++;
+		return true;
+	}
+
+	/**
+	 * Start recording undo/redo history, keeping at most the given number of edit groups.
+	 * Any history recorded before is discarded.
+	 * @param maxDepth	maximum number of edit groups that can be undone
+	 * @throws IllegalArgumentException	depth at least 1
+	 */
+	public void enableHistory(int maxDepth) throws IllegalArgumentException{
+		this.history = new PlannerHistory(maxDepth);
+	}
+
+	/**
+	 * Stop recording undo/redo history and discard it.
+	 */
+	public void disableHistory(){
+		this.history = null;
+	}
+
+	/**
+	 * Open an edit group: all changes until the matching endEdit() are undone and redone together.
+	 * Does nothing when history is disabled.
+	 */
+	public void beginEdit(){
+
+		if(history != null){
+			history.begin();
+		}
+	}
+
+	/**
+	 * Close an edit group opened by beginEdit(). Does nothing when history is disabled.
+	 * @throws IllegalStateException	no group is open
+	 */
+	public void endEdit() throws IllegalStateException{
+
+		if(history != null){
+			history.end();
+		}
+	}
+
+	/**
+	 * Undo the most recent edit group.
+	 * @return	true if there was something to undo
+	 * @throws IllegalStateException	an edit group is open
+	 */
+	public boolean undo() throws IllegalStateException{
+
+		PlannerHistory.Edit[] group = (history == null) ? null : history.undo();
+		if(group == null){
+			return false;
+		}
+		for(int i = group.length - 1; i >= 0; i--){
+			this.apply(group[i], true);
+		}
+		version++;
+		return true;
+	}
+
+	/**
+	 * Redo the most recently undone edit group.
+	 * @return	true if there was something to redo
+	 * @throws IllegalStateException	an edit group is open
+	 */
+	public boolean redo() throws IllegalStateException{
+
+		PlannerHistory.Edit[] group = (history == null) ? null : history.redo();
+		if(group == null){
+			return false;
+		}
+		for(int i = 0; i < group.length; i++){
+			this.apply(group[i], false);
+		}
+		version++;
 		return true;
 	}
+
+	/**
+	 * Report whether an edit group can be undone.
+	 * @return	true if it can
+	 */
+	public boolean canUndo(){
+		return history != null && history.canUndo();
+	}
+
+	/**
+	 * Report whether an edit group can be redone.
+	 * @return	true if it can
+	 */
+	public boolean canRedo(){
+		return history != null && history.canRedo();
+	}
+
+	/**
+	 * Report the depth of the undo/redo history.
+	 * @return	maximum number of edit groups, or 0 when history is disabled
+	 */
+	int getHistoryDepth(){
+		return (history == null) ? 0 : history.getMaxDepth();
+	}
+
+	/**
+	 * Report the storage of the events.
+	 * @return	storage
+	 */
+	SortedStorage<Event> getStorage(){
+		return events;
+	}
+
+	/**
+	 * Create an empty planner with storage set up like this one's and the same secondary indexes, to
+	 * rebuild this one from its events. History is not enabled on it, so that adding the events is not
+	 * recorded.
+	 * @return	empty planner, or null if this one has recorded history and cannot be rebuilt from its
+	 * 			events alone
+	 */
+	Planner emptyLike(){
+
+		if(history != null && !history.isEmpty()){
+			return null;
+		}
+		Planner result = new Planner(events.emptyCopy());
+		for(MySortedArray<Event> index : indexes){
+			result.enableIndex(index.comparator());
+		}
+		return result;
+	}
+
+	/**
+	 * Apply a recorded change or its inverse. The planner must be in the state right after the change
+	 * (when undoing) or right before it (when redoing), so every recorded index is still valid.
+	 * @param edit	change
+	 * @param undo	true to invert the change
+	 */
+	private void apply(PlannerHistory.Edit edit, boolean undo){
+
+		if(edit.type == PlannerHistory.ADD){
+			if(undo){
+				this.unindexEvent(events.delete(edit.index));
+			}
+			else{
+				events.add(edit.index, edit.event);
+				this.indexEvent(edit.event);
+			}
+		}
+		else if(edit.type == PlannerHistory.REMOVE){
+			if(undo){
+				events.add(edit.index, edit.event);
+				this.indexEvent(edit.event);
+			}
+			else{
+				this.unindexEvent(events.delete(edit.index));
+			}
+		}
+		else if(edit.type == PlannerHistory.MOVE){
+			Event event = events.delete(undo ? edit.target : edit.index);
+			this.unindexEvent(event);
+			event.moveStart(MyTime.fromMinutes(undo ? edit.before : edit.after));
+			events.add(undo ? edit.index : edit.target, event);
+			this.indexEvent(event);
+		}
+		else if(edit.type == PlannerHistory.DURATION){
+			Event event = events.get(edit.index);
+			this.unindexEvent(event);
+			event.changeDuration(undo ? edit.before : edit.after);
+			this.indexEvent(event);
+			events.replace(edit.index, event);
+		}
+		else{
+			Event event = events.get(edit.index);
+			this.unindexEvent(event);
+			event.setDescription(undo ? edit.oldDescription : edit.newDescription);
+			this.indexEvent(event);
+			events.replace(edit.index, event);
+		}
+	}
+	
+	/**
+	 * Start keeping the events in the given order as well, e.g. Event.BY_END. The index is built once
+	 * here and then updated by every change made through the planner. Does nothing if the order is
+	 * already indexed.
+	 * @param order	order, compared by identity
+	 * @throws IllegalArgumentException	valid order
+	 */
+	public void enableIndex(Comparator<? super Event> order) throws IllegalArgumentException{
+
+		if(order == null){
+			throw new IllegalArgumentException("Null Comparator object!");
+		}
+		if(this.findIndex(order) != null){
+			return;
+		}
+		MySortedArray<Event> index = new MySortedArray<Event>(order);
+		Event[] all = new Event[events.size()];
+		for(int i = 0; i < all.length; i++){
+			all[i] = events.get(i);
+		}
+		index.addAll(all);
+		indexes.add(index);
+	}
+
+	/**
+	 * Stop keeping the events in the given order.
+	 * @param order	order
+	 * @return	true if it was indexed
+	 */
+	public boolean disableIndex(Comparator<? super Event> order){
+		return indexes.remove(this.findIndex(order));
+	}
+
+	/**
+	 * Report whether the events are kept in the given order.
+	 * @param order	order
+	 * @return	true if they are
+	 */
+	public boolean isIndexed(Comparator<? super Event> order){
+		return this.findIndex(order) != null;
+	}
+
+	/**
+	 * Get the event at the given rank in an indexed order.
+	 * @param order	indexed order
+	 * @param rank	rank, 0 for the first event in that order
+	 * @return	the event, or null if rank is out of range
+	 * @throws IllegalArgumentException	order is indexed
+	 */
+	public Event getEventBy(Comparator<? super Event> order, int rank) throws IllegalArgumentException{
+
+		MySortedArray<Event> index = this.requireIndex(order);
+		if(rank < 0 || rank >= index.size()){
+			return null;
+		}
+		return index.get(rank);
+	}
+
+	/**
+	 * Get the first k events in an indexed order, or the last k in reverse, in O(k).
+	 * @param order	indexed order
+	 * @param k	number of events wanted
+	 * @param descending	true for the last events, largest first
+	 * @return	at most k events
+	 * @throws IllegalArgumentException	order is indexed, k not negative
+	 */
+	public Event[] getEventsBy(Comparator<? super Event> order, int k, boolean descending) throws IllegalArgumentException{
+
+		MySortedArray<Event> index = this.requireIndex(order);
+		if(k < 0){
+			throw new IllegalArgumentException("Count cannot be negative!");
+		}
+		Event[] result = new Event[Math.min(k, index.size())];
+		for(int i = 0; i < result.length; i++){
+			result[i] = index.get(descending ? index.size() - 1 - i : i);
+		}
+		return result;
+	}
+
+	/**
+	 * Find the index kept in the given order.
+	 * @param order	order
+	 * @return	index, or null
+	 */
+	private MySortedArray<Event> findIndex(Comparator<? super Event> order){
+
+		for(MySortedArray<Event> index : indexes){
+			if(index.comparator() == order){
+				return index;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find the index kept in the given order, which must exist.
+	 * @param order	order
+	 * @return	index
+	 * @throws IllegalArgumentException	order is indexed
+	 */
+	private MySortedArray<Event> requireIndex(Comparator<? super Event> order) throws IllegalArgumentException{
+
+		MySortedArray<Event> index = this.findIndex(order);
+		if(index == null){
+			throw new IllegalArgumentException("Order is not indexed!");
+		}
+		return index;
+	}
+
+	/**
+	 * Add an event to every secondary index.
+	 * @param event	event
+	 */
+	private void indexEvent(Event event){
+
+		for(MySortedArray<Event> index : indexes){
+			index.add(event);
+		}
+	}
+
+	/**
+	 * Remove an event from every secondary index. It must be called before the event is changed, while
+	 * the indexes still have it in place. The entry is matched by identity, or by its times and description
+	 * when the storage hands out copies.
+	 * @param event	event
+	 */
+	private void unindexEvent(Event event){
+
+		for(MySortedArray<Event> index : indexes){
+			Comparator<? super Event> order = index.comparator();
+			int low = 0;
+			int high = index.size();
+			while(low < high){
+				int mid = (low + high) >>> 1;
+				if(order.compare(index.get(mid), event) < 0){
+					low = mid + 1;
+				}
+				else{
+					high = mid;
+				}
+			}
+			int match = -1;
+			for(int i = low; i < index.size() && order.compare(index.get(i), event) == 0; i++){
+				Event entry = index.get(i);
+				if(entry == event){
+					match = i;
+					break;
+				}
+				if(match < 0 && entry.getStart().compareTo(event.getStart()) == 0
+					&& entry.getEnd().compareTo(event.getEnd()) == 0
+					&& entry.getDescription().equals(event.getDescription())){
+					match = i;
+				}
+			}
+			if(match >= 0){
+				index.delete(match);
+			}
+		}
+	}
 	
 	/**
 	 * Get event.
@@ -144,11 +616,80 @@ public class Planner{
 		if(index < 0 || index >= events.size()){
 			return null;
 		}
-		return events.get(index); 
+		return events.get(index);
+	}
+
+	/**
+	 * Find the index of the first event starting at or after the given time.
+	 * @param time	time
+	 * @return	index within [0, size()]
+	 * @throws IllegalArgumentException	valid time
+	 */
+	public int indexOf(MyTime time) throws IllegalArgumentException{
+
+		if(time == null){
+			throw new IllegalArgumentException("Null Time object!");
+		}
+		int low = 0;
+		int high = events.size();
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(events.get(mid).getStart().compareTo(time) < 0){
+				low = mid + 1;
+			}
+			else{
+				high = mid;
+			}
+		}
+		return low;
 	}
 
 	/**
-	 * 5 test cases.
+	 * Find the index of the first event starting after the given time, which is where add() inserts
+	 * an event starting at that time.
+	 * @param time	time
+	 * @return	index within [0, size()]
+	 */
+	private int upperBound(MyTime time){
+
+		int low = 0;
+		int high = events.size();
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(events.get(mid).getStart().compareTo(time) <= 0){
+				low = mid + 1;
+			}
+			else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Get the events starting within [from, to]. Both ends are included, so that [00:00, 23:59] covers
+	 * the whole day.
+	 * @param from	first start time included
+	 * @param to	last start time included
+	 * @return	events in ascending order
+	 * @throws IllegalArgumentException	valid times
+	 */
+	public Event[] getEventsInRange(MyTime from, MyTime to) throws IllegalArgumentException{
+
+		if(to == null){
+			throw new IllegalArgumentException("Null Time object!");
+		}
+		int first = this.indexOf(from);
+		int last = Math.max(first, this.upperBound(to));
+		Event[] result = new Event[last - first];
+		for(int i = first; i < last; i++){
+			result[i - first] = events.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * 11 test cases.
 	 * @param args	not used
 	 */
 	public static void main(String[] args){
@@ -196,6 +737,81 @@ public class Planner{
 			System.out.println("Yay 5");							
 		}
 		//System.out.println(day1);
+
+		// undo and redo single edits
+		Planner day2 = new Planner();
+		day2.enableHistory(10);
+		day2.addEvent(new Event(new MyTime(9), new MyTime(10), "meeting"));
+		day2.addEvent(new Event(new MyTime(12), new MyTime(13), "lunch"));
+		String before = day2.toString();
+		day2.moveEvent(0, new MyTime(14));
+		day2.changeDescription(0, "long lunch");
+		if (day2.undo() && day2.undo() && day2.toString().equals(before)
+			&& day2.redo() && day2.getEvent(1).getStart().getHour() == 14 && day2.canRedo()){
+			System.out.println("Yay 6");
+		}
+
+		// an edit group is undone as a unit; a new edit clears redo
+		day2.beginEdit();
+		day2.removeEvent(0);
+		day2.changeDuration(0, 120);
+		day2.addEvent(new Event(new MyTime(8), new MyTime(9), "gym"));
+		day2.endEdit();
+		if (day2.undo() && day2.toString().equals("[0]12:00-13:00/lunch\n[1]14:00-15:00/meeting")
+			&& day2.removeEvent(0) && !day2.canRedo()){
+			System.out.println("Yay 7");
+		}
+
+		// secondary indexes follow every change, including undo
+		Planner day3 = new Planner();
+		day3.enableHistory(10);
+		day3.addEvent(new Event(new MyTime(9), new MyTime(12), "workshop"));
+		day3.addEvent(new Event(new MyTime(8), new MyTime(8, 15), "coffee"));
+		day3.enableIndex(Event.BY_DURATION);
+		day3.enableIndex(Event.BY_END);
+		day3.addEvents(new Event[]{new Event(new MyTime(13), new MyTime(14), "lunch")});
+		day3.changeDuration(0, 30);
+		day3.moveEvent(0, new MyTime(15));
+		Event[] longest = day3.getEventsBy(Event.BY_DURATION, 2, true);
+		if (longest.length == 2 && longest[0].getDescription().equals("workshop")
+			&& longest[1].getDescription().equals("lunch")
+			&& day3.getEventBy(Event.BY_END, 2).getDescription().equals("coffee") && day3.undo()
+			&& day3.getEventBy(Event.BY_END, 0).getDescription().equals("coffee")
+			&& day3.getEventsBy(Event.BY_END, 5, false).length == 3){
+			System.out.println("Yay 8");
+		}
+
+		// off-heap storage hands out copies; the index matches them by value
+		Planner day4 = new Planner(new OffHeapEventArray());
+		day4.enableIndex(Event.BY_DESCRIPTION);
+		day4.addEvent(new Event(new MyTime(10), new MyTime(11), "b"));
+		day4.addEvent(new Event(new MyTime(11), new MyTime(12), "a"));
+		day4.changeDescription(0, "c");
+		day4.removeEvent(1);
+		if (day4.getEventsBy(Event.BY_DESCRIPTION, 3, false).length == 1
+			&& day4.getEventBy(Event.BY_DESCRIPTION, 0).getDescription().equals("c")
+			&& day4.disableIndex(Event.BY_DESCRIPTION) && !day4.isIndexed(Event.BY_DESCRIPTION)){
+			System.out.println("Yay 9");
+		}
+
+		// range ends are inclusive, so the whole day reaches an event starting at 23:59
+		Planner day5 = new Planner();
+		day5.addEvent(new Event(new MyTime(0), new MyTime(1), "night"));
+		day5.addEvent(new Event(new MyTime(12), new MyTime(13), "noon"));
+		day5.addEvent(new Event(new MyTime(23, 59), new MyTime(23, 59), "midnight"));
+		if (day5.getEventsInRange(new MyTime(), new MyTime(23, 59)).length == 3
+			&& day5.getEventsInRange(new MyTime(12), new MyTime(12)).length == 1
+			&& day5.getEventsInRange(new MyTime(13), new MyTime(12)).length == 0){
+			System.out.println("Yay 10");
+		}
+
+		// storage in another order is refused
+		try{
+			new Planner(new MySortedArray<>(Event.BY_END));
+		}
+		catch(IllegalArgumentException e){
+			System.out.println("Yay 11");
+		}
 		
 	}
 }
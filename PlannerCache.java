@@ -0,0 +1,886 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A cache of planners bounded by an estimate of the memory they use. Each planner's footprint is
+ * estimated from its size() and capacity(). When the resident planners exceed the budget, the least
+ * recently used ones are written to a spill file in the compact PlannerDiff encoding and dropped from
+ * memory. A spilled planner is read back on its next access into the same kind of storage, with the same
+ * secondary indexes and history depth; concurrent accesses to the same spilled planner wait for a single
+ * load. Spill files are read and written outside the cache's lock, so hits never wait on the disk; the
+ * file is compacted once it is mostly garbage. Planners whose undo/redo history holds edits cannot be
+ * rebuilt from their events and stay resident. get() is for reads: a planner may be spilled at any time
+ * after it returns, and changes made to it afterwards are lost. To change a planner, acquire() it, which
+ * pins it in memory, and release() it when done.
+ * @author Hongjia Hao
+ * @param <K> key type
+ */
+public class PlannerCache<K> implements Closeable {
+
+	/**
+	 * Where a spilled planner is in the file and how to rebuild it.
+	 */
+	private static class Spill {
+
+		/**
+		 * Offset in the spill file.
+		 */
+		private final long offset;
+		/**
+		 * Length in bytes.
+		 */
+		private final int length;
+		/**
+		 * Empty planner with the storage kind and indexes of the spilled one.
+		 */
+		private final Planner blank;
+		/**
+		 * History depth to enable after the events are loaded, or 0.
+		 */
+		private final int historyDepth;
+
+		/**
+		 * Constructor.
+		 * @param offset	offset in the spill file
+		 * @param length	length in bytes
+		 * @param blank	empty planner configured like the spilled one
+		 * @param historyDepth	history depth, or 0
+		 */
+		Spill(long offset, int length, Planner blank, int historyDepth){
+			this.offset = offset;
+			this.length = length;
+			this.blank = blank;
+			this.historyDepth = historyDepth;
+		}
+	}
+
+	/**
+	 * A planner chosen for spilling whose write has not finished. It is no longer resident, but a get()
+	 * in the meantime takes it back.
+	 */
+	private static class Victim<K> {
+
+		/**
+		 * Key.
+		 */
+		private final K key;
+		/**
+		 * Planner.
+		 */
+		private final Planner planner;
+		/**
+		 * Its footprint, to restore if the write fails.
+		 */
+		private final long footprint;
+		/**
+		 * Its encoding.
+		 */
+		private final byte[] bytes;
+		/**
+		 * Empty planner configured like it.
+		 */
+		private final Planner blank;
+		/**
+		 * Its history depth, or 0.
+		 */
+		private final int historyDepth;
+
+		/**
+		 * Constructor. Encodes the planner, which must not change meanwhile.
+		 * @param key	key
+		 * @param planner	planner
+		 * @param footprint	footprint
+		 * @param blank	empty planner configured like it
+		 */
+		Victim(K key, Planner planner, long footprint, Planner blank){
+			this.key = key;
+			this.planner = planner;
+			this.footprint = footprint;
+			this.bytes = PlannerDiff.diff(new Planner(), planner).encode();
+			this.blank = blank;
+			this.historyDepth = planner.getHistoryDepth();
+		}
+	}
+
+	/**
+	 * Estimated bytes of a planner and its storage, without events.
+	 */
+	static final long PLANNER_BYTES = 96;
+	/**
+	 * Estimated bytes of one slot of the storage array.
+	 */
+	static final long SLOT_BYTES = 8;
+	/**
+	 * Estimated bytes of one event with its times and a short description.
+	 */
+	static final long EVENT_BYTES = 120;
+
+	/**
+	 * Memory budget in bytes.
+	 */
+	private final long budget;
+
+	/**
+	 * Resident planners, least recently used first.
+	 */
+	private final LinkedHashMap<K, Planner> resident;
+
+	/**
+	 * Footprint of each resident planner as last estimated.
+	 */
+	private final HashMap<K, Long> footprints;
+
+	/**
+	 * Sum of the footprints.
+	 */
+	private long used;
+
+	/**
+	 * Spill file.
+	 */
+	private final Path path;
+
+	/**
+	 * Open spill file.
+	 */
+	private FileChannel file;
+
+	/**
+	 * Held shared while reading or writing the spill file, and exclusively while compacting it.
+	 * Never acquired while holding the cache's monitor.
+	 */
+	private final ReentrantReadWriteLock fileLock;
+
+	/**
+	 * Offset at which the next spilled planner is written.
+	 */
+	private long fileEnd;
+
+	/**
+	 * Whether a compaction is running or about to.
+	 */
+	private boolean compacting;
+
+	/**
+	 * Location of each spilled planner in the file.
+	 */
+	private final HashMap<K, Spill> spilled;
+
+	/**
+	 * Bytes of the file still referenced by spilled.
+	 */
+	private long liveBytes;
+
+	/**
+	 * Planners being written to the spill file, by key.
+	 */
+	private final HashMap<K, Victim<K>> spilling;
+
+	/**
+	 * Loads in progress, by key.
+	 */
+	private final HashMap<K, CompletableFuture<Planner>> loading;
+
+	/**
+	 * Number of outstanding acquire() calls, by key. Pinned planners are never spilled.
+	 */
+	private final HashMap<K, Integer> pins;
+
+	/**
+	 * Number of planners written to the spill file.
+	 */
+	private int evictions;
+
+	/**
+	 * Number of planners read back from the spill file.
+	 */
+	private int loads;
+
+	/**
+	 * Constructor.
+	 * @param budget	memory budget in bytes
+	 * @param path	spill file, created or truncated
+	 * @throws IOException	cannot create the spill file
+	 * @throws IllegalArgumentException	valid budget and path
+	 */
+	public PlannerCache(long budget, Path path) throws IOException, IllegalArgumentException{
+
+		if(budget < 1 || path == null){
+			throw new IllegalArgumentException("Budget must be positive and path non-null!");
+		}
+		this.budget = budget;
+		this.resident = new LinkedHashMap<>(16, 0.75f, true);
+		this.footprints = new HashMap<>();
+		this.used = 0;
+		this.path = path;
+		this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.fileLock = new ReentrantReadWriteLock(true);
+		this.fileEnd = 0;
+		this.compacting = false;
+		this.spilled = new HashMap<>();
+		this.liveBytes = 0;
+		this.spilling = new HashMap<>();
+		this.loading = new HashMap<>();
+		this.pins = new HashMap<>();
+		this.evictions = 0;
+		this.loads = 0;
+	}
+
+	/**
+	 * Estimate the memory used by a planner.
+	 * @param planner	planner
+	 * @return	bytes
+	 */
+	public static long footprint(Planner planner){
+		return PLANNER_BYTES + planner.capacity() * SLOT_BYTES + planner.size() * EVENT_BYTES;
+	}
+
+	/**
+	 * Report the estimated bytes used by resident planners.
+	 * @return	bytes
+	 */
+	public synchronized long used(){
+		return used;
+	}
+
+	/**
+	 * Report the number of resident planners.
+	 * @return	number of planners
+	 */
+	public synchronized int residentCount(){
+		return resident.size();
+	}
+
+	/**
+	 * Report the number of planners written to the spill file so far.
+	 * @return	evictions
+	 */
+	public synchronized int getEvictionCount(){
+		return evictions;
+	}
+
+	/**
+	 * Report the number of planners read back from the spill file so far.
+	 * @return	loads
+	 */
+	public synchronized int getLoadCount(){
+		return loads;
+	}
+
+	/**
+	 * Add or replace a planner.
+	 * @param key	key
+	 * @param planner	planner
+	 * @throws IOException	cannot spill
+	 * @throws IllegalArgumentException	valid key and planner
+	 */
+	public void put(K key, Planner planner) throws IOException, IllegalArgumentException{
+
+		if(key == null || planner == null){
+			throw new IllegalArgumentException("Null key or planner!");
+		}
+		List<Victim<K>> victims;
+		synchronized(this){
+			this.forget(key);
+			victims = this.admit(key, planner);
+		}
+		this.spillAll(victims);
+	}
+
+	/**
+	 * Remove a planner, resident or spilled.
+	 * @param key	key
+	 * @return	true if there was one
+	 */
+	public synchronized boolean remove(K key){
+		return this.forget(key);
+	}
+
+	/**
+	 * Get a planner to read, reading it back from the spill file if it was evicted. It may be spilled
+	 * again at any time, so it must not be changed; use acquire() for that.
+	 * @param key	key
+	 * @return	planner, or null if there is none for the key
+	 * @throws IOException	cannot read or write the spill file
+	 */
+	public Planner get(K key) throws IOException{
+
+		while(true){
+			Planner planner;
+			List<Victim<K>> victims = List.of();
+			CompletableFuture<Planner> future;
+			boolean owner = false;
+			synchronized(this){
+				planner = resident.get(key);
+				if(planner != null){
+					victims = this.refresh(key, planner);
+				}
+				else if(spilling.containsKey(key)){
+					// its write has not finished; take it back
+					planner = spilling.remove(key).planner;
+					victims = this.admit(key, planner);
+				}
+				future = loading.get(key);
+				if(planner == null && future == null){
+					if(spilled.containsKey(key) == false){
+						return null;
+					}
+					future = new CompletableFuture<>();
+					loading.put(key, future);
+					owner = true;
+				}
+			}
+			if(planner != null){
+				this.spillAll(victims);
+				return planner;
+			}
+			if(owner){
+				this.spillAll(this.load(key, future));
+			}
+			try{
+				planner = future.join();
+			}
+			catch(CompletionException e){
+				if(e.getCause() instanceof IOException){
+					throw (IOException)e.getCause();
+				}
+				throw e;
+			}
+			if(planner != null){
+				return planner;
+			}
+			// replaced or removed while loading; look again
+		}
+	}
+
+	/**
+	 * Get a planner and pin it in memory until the matching release(), so that changes made to it in
+	 * between are kept. Calls for the same key may nest.
+	 * @param key	key
+	 * @return	planner, or null if there is none for the key
+	 * @throws IOException	cannot read or write the spill file
+	 */
+	public Planner acquire(K key) throws IOException{
+
+		while(true){
+			Planner planner = this.get(key);
+			if(planner == null){
+				return null;
+			}
+			synchronized(this){
+				// it may have been spilled again between get() and here
+				if(resident.get(key) == planner){
+					pins.merge(key, 1, Integer::sum);
+					return planner;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unpin a planner obtained with acquire(). Its footprint is estimated again, since it may have grown.
+	 * @param key	key
+	 * @throws IOException	cannot spill
+	 * @throws IllegalStateException	the key is not acquired
+	 */
+	public void release(K key) throws IOException, IllegalStateException{
+
+		List<Victim<K>> victims = List.of();
+		synchronized(this){
+			Integer count = pins.get(key);
+			if(count == null){
+				throw new IllegalStateException("Planner is not acquired!");
+			}
+			if(count == 1){
+				pins.remove(key);
+			}
+			else{
+				pins.put(key, count - 1);
+			}
+			Planner planner = resident.get(key);
+			if(planner != null){
+				victims = this.refresh(key, planner);
+			}
+		}
+		this.spillAll(victims);
+	}
+
+	/**
+	 * Read a spilled planner and make it resident, completing the future other callers wait on. The
+	 * future completes with null if the planner was replaced or removed in the meantime.
+	 * @param key	key
+	 * @param future	future to complete
+	 * @return	planners to spill to make room for it
+	 */
+	private List<Victim<K>> load(K key, CompletableFuture<Planner> future){
+
+		List<Victim<K>> victims = List.of();
+		fileLock.readLock().lock();
+		try{
+			Spill location;
+			FileChannel channel;
+			synchronized(this){
+				location = spilled.get(key);
+				channel = file;
+			}
+			Planner planner = null;
+			if(location != null){
+				ByteBuffer bytes = ByteBuffer.allocate(location.length);
+				while(bytes.hasRemaining()){
+					if(channel.read(bytes, location.offset + bytes.position()) < 0){
+						throw new IOException("Spill file truncated!");
+					}
+				}
+				planner = location.blank.emptyLike();
+				PlannerDiff.apply(bytes.array(), planner);
+				if(location.historyDepth > 0){
+					planner.enableHistory(location.historyDepth);
+				}
+			}
+			synchronized(this){
+				loading.remove(key);
+				if(location != null && spilled.get(key) == location){
+					spilled.remove(key);
+					liveBytes -= location.length;
+					loads++;
+					victims = this.admit(key, planner);
+				}
+				else{
+					planner = null;
+				}
+			}
+			future.complete(planner);
+		}
+		catch(IOException | RuntimeException e){
+			synchronized(this){
+				loading.remove(key);
+			}
+			future.completeExceptionally(e);
+		}
+		finally{
+			fileLock.readLock().unlock();
+		}
+		return victims;
+	}
+
+	/**
+	 * Drop every trace of a key.
+	 * @param key	key
+	 * @return	true if there was a planner for it
+	 */
+	private boolean forget(K key){
+
+		boolean found = false;
+		if(resident.remove(key) != null){
+			used -= footprints.remove(key);
+			found = true;
+		}
+		if(spilling.remove(key) != null){
+			found = true;
+		}
+		Spill location = spilled.remove(key);
+		if(location != null){
+			liveBytes -= location.length;
+			found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * Re-estimate the footprint of a resident planner, which may have changed since it was last seen.
+	 * @param key	key
+	 * @param planner	planner
+	 * @return	planners to spill to get back within budget
+	 */
+	private List<Victim<K>> refresh(K key, Planner planner){
+
+		long footprint = footprint(planner);
+		used += footprint - footprints.put(key, footprint);
+		return this.evictOver(key);
+	}
+
+	/**
+	 * Make a planner resident.
+	 * @param key	key
+	 * @param planner	planner
+	 * @return	planners to spill to get back within budget
+	 */
+	private List<Victim<K>> admit(K key, Planner planner){
+
+		long footprint = footprint(planner);
+		resident.put(key, planner);
+		footprints.put(key, footprint);
+		used += footprint;
+		return this.evictOver(key);
+	}
+
+	/**
+	 * Choose the least recently used planners to spill until within budget, never the one just used, a
+	 * pinned one or one that cannot be rebuilt. They leave the resident set right away; spillAll() writes
+	 * them once the monitor is released.
+	 * @param keep	key of the planner just used
+	 * @return	planners to spill
+	 */
+	private List<Victim<K>> evictOver(K keep){
+
+		List<Victim<K>> victims = new ArrayList<>();
+		Iterator<Map.Entry<K, Planner>> eldest = resident.entrySet().iterator();
+		while(used > budget && eldest.hasNext()){
+			Map.Entry<K, Planner> entry = eldest.next();
+			if(entry.getKey().equals(keep) || pins.containsKey(entry.getKey())){
+				continue;
+			}
+			Planner blank = entry.getValue().emptyLike();
+			if(blank == null){
+				continue;
+			}
+			Victim<K> victim = new Victim<>(entry.getKey(), entry.getValue(), footprints.remove(entry.getKey()), blank);
+			eldest.remove();
+			used -= victim.footprint;
+			spilling.put(entry.getKey(), victim);
+			victims.add(victim);
+		}
+		return victims;
+	}
+
+	/**
+	 * Write planners chosen by evictOver() to the spill file, then compact it if it is mostly garbage.
+	 * Must be called without holding the monitor. If a write fails, the planners not yet written are
+	 * made resident again.
+	 * @param victims	planners to spill
+	 * @throws IOException	cannot write
+	 */
+	private void spillAll(List<Victim<K>> victims) throws IOException{
+
+		if(victims.isEmpty()){
+			return;
+		}
+		int written = 0;
+		try{
+			for(Victim<K> victim : victims){
+				this.spill(victim);
+				written++;
+			}
+		}
+		finally{
+			if(written < victims.size()){
+				this.restore(victims.subList(written, victims.size()));
+			}
+		}
+		boolean compact;
+		synchronized(this){
+			compact = !compacting && fileEnd > 2 * liveBytes + (1 << 20);
+			compacting |= compact;
+		}
+		if(compact){
+			try{
+				this.compact();
+			}
+			finally{
+				synchronized(this){
+					compacting = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Append a planner to the spill file. Nothing is recorded if it was taken back or forgotten before
+	 * the write finished.
+	 * @param victim	planner to spill
+	 * @throws IOException	cannot write
+	 */
+	private void spill(Victim<K> victim) throws IOException{
+
+		fileLock.readLock().lock();
+		try{
+			long offset;
+			FileChannel channel;
+			synchronized(this){
+				if(spilling.get(victim.key) != victim){
+					return;
+				}
+				offset = fileEnd;
+				fileEnd += victim.bytes.length;
+				channel = file;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(victim.bytes);
+			while(buffer.hasRemaining()){
+				channel.write(buffer, offset + buffer.position());
+			}
+			synchronized(this){
+				if(spilling.get(victim.key) == victim){
+					spilling.remove(victim.key);
+					spilled.put(victim.key, new Spill(offset, victim.bytes.length, victim.blank, victim.historyDepth));
+					liveBytes += victim.bytes.length;
+					evictions++;
+				}
+			}
+		}
+		finally{
+			fileLock.readLock().unlock();
+		}
+	}
+	/**
+	 * Make planners whose write failed resident again, unless they were taken back or forgotten.
+	 * @param victims	planners not written
+	 */
+	private synchronized void restore(List<Victim<K>> victims){
+
+		for(Victim<K> victim : victims){
+			if(spilling.get(victim.key) == victim){
+				spilling.remove(victim.key);
+				resident.put(victim.key, victim.planner);
+				footprints.put(victim.key, victim.footprint);
+				used += victim.footprint;
+			}
+		}
+	}
+
+	/**
+	 * Rewrite the spill file with only the planners still spilled. Loads and spills wait for it, but
+	 * hits do not: the copying happens outside the monitor.
+	 * @throws IOException	cannot rewrite
+	 */
+	private void compact() throws IOException{
+
+		fileLock.writeLock().lock();
+		try{
+			Map<K, Spill> before;
+			synchronized(this){
+				before = new HashMap<>(spilled);
+			}
+			Path temp = path.resolveSibling(path.getFileName() + ".compact");
+			Map<K, Spill> after = new HashMap<>();
+			long offset = 0;
+			try(FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE)){
+				for(Map.Entry<K, Spill> entry : before.entrySet()){
+					Spill location = entry.getValue();
+					long copied = 0;
+					while(copied < location.length){
+						copied += file.transferTo(location.offset + copied, location.length - copied, target);
+					}
+					after.put(entry.getKey(), new Spill(offset, location.length, location.blank, location.historyDepth));
+					offset += location.length;
+				}
+			}
+			file.close();
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			FileChannel compacted = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			synchronized(this){
+				file = compacted;
+				fileEnd = offset;
+				for(Map.Entry<K, Spill> entry : after.entrySet()){
+					// planners removed meanwhile stay removed
+					if(spilled.get(entry.getKey()) == before.get(entry.getKey())){
+						spilled.put(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+		}
+		finally{
+			fileLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Close and delete the spill file. Spilled planners are lost.
+	 * @throws IOException	cannot delete
+	 */
+	@Override
+	public void close() throws IOException{
+
+		fileLock.writeLock().lock();
+		try{
+			synchronized(this){
+				file.close();
+				Files.deleteIfExists(path);
+				spilled.clear();
+				spilling.clear();
+			}
+		}
+		finally{
+			fileLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 7 test cases.
+	 * @param args	not used
+	 * @throws Exception	test failed
+	 */
+	public static void main(String[] args) throws Exception{
+
+		Path path = Files.createTempFile("planners", ".spill");
+		Planner sample = PlannerWorkload.populate(100, 1);
+		try(PlannerCache<Integer> cache = new PlannerCache<>(5 * footprint(sample), path)){
+
+			// over budget, the least recently used planners are spilled
+			String[] texts = new String[20];
+			for(int i = 0; i < 20; i++){
+				Planner planner = PlannerWorkload.populate(100, i);
+				texts[i] = planner.toString();
+				cache.put(i, planner);
+			}
+			if (cache.residentCount() == 5 && cache.used() <= 5 * footprint(sample) && cache.getEvictionCount() == 15){
+				System.out.println("Yay 1");
+			}
+
+			// spilled planners come back intact
+			boolean intact = true;
+			for(int i = 0; i < 20; i++){
+				intact &= cache.get(i).toString().equals(texts[i]);
+			}
+			if (intact && cache.getLoadCount() == 20 && cache.get(99) == null){
+				System.out.println("Yay 2");
+			}
+
+			// concurrent misses on the same planner load it once
+			int loadsBefore = cache.getLoadCount();
+			int spilledKey = 0;
+			while(cache.resident.containsKey(spilledKey)){
+				spilledKey++;
+			}
+			int key = spilledKey;
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicInteger same = new AtomicInteger();
+			Planner[] seen = new Planner[8];
+			Thread[] threads = new Thread[8];
+			for(int i = 0; i < threads.length; i++){
+				int slot = i;
+				threads[i] = new Thread(() -> {
+					try{
+						start.await();
+						seen[slot] = cache.get(key);
+					}
+					catch(Exception e){
+						seen[slot] = null;
+					}
+				});
+				threads[i].start();
+			}
+			start.countDown();
+			for(Thread thread : threads){
+				thread.join();
+			}
+			for(Planner planner : seen){
+				if(planner != null && planner == seen[0]){
+					same.incrementAndGet();
+				}
+			}
+			if (same.get() == 8 && cache.getLoadCount() == loadsBefore + 1){
+				System.out.println("Yay 3");
+			}
+
+			// storage kind, indexes and history depth survive a spill; recorded history keeps a planner resident
+			Planner offHeap = new Planner(new OffHeapEventArray());
+			offHeap.addEvents(PlannerWorkload.populate(100, 2).getEventsInRange(new MyTime(), new MyTime(23, 59)));
+			offHeap.enableIndex(Event.BY_END);
+			offHeap.enableHistory(5);
+			cache.put(100, offHeap);
+			Planner edited = PlannerWorkload.populate(100, 3);
+			edited.enableHistory(5);
+			edited.removeEvent(0);
+			cache.put(101, edited);
+			for(int i = 0; i < 20; i++){
+				cache.get(i);
+			}
+			Planner reloaded = cache.get(100);
+			if (reloaded != offHeap && reloaded.toString().equals(offHeap.toString()) && reloaded.isIndexed(Event.BY_END)
+				&& reloaded.getEventBy(Event.BY_END, 0) != null && !reloaded.canUndo()
+				&& reloaded.removeEvent(0) && reloaded.canUndo() && cache.get(101) == edited){
+				System.out.println("Yay 4");
+			}
+
+			// a pinned planner is never spilled and keeps its changes
+			Planner pinned = cache.acquire(0);
+			for(int i = 1; i < 20; i++){
+				cache.get(i);
+			}
+			pinned.removeEvent(0);
+			boolean stayed = cache.get(0) == pinned;
+			cache.release(0);
+			boolean unpinned = false;
+			try{
+				cache.release(0);
+			}
+			catch(IllegalStateException e){
+				unpinned = true;
+			}
+			if (stayed && unpinned && cache.get(0).size() == 99){
+				System.out.println("Yay 5");
+			}
+
+			// a planner with deferred sorting comes back with deferred sorting
+			MySortedArray<Event> storage = new MySortedArray<>();
+			storage.setDeferredSort(true);
+			Planner deferred = new Planner(storage);
+			for(Event event : PlannerWorkload.populate(100, 4).getEventsInRange(new MyTime(0, 0), new MyTime(23, 59))){
+				deferred.addEvent(event);
+			}
+			cache.put(102, deferred);
+			for(int i = 0; i < 20; i++){
+				cache.get(i);
+			}
+			Planner back = cache.get(102);
+			if (back != deferred && back.toString().equals(deferred.toString())
+				&& ((MySortedArray<Event>)back.getStorage()).isDeferredSort()){
+				System.out.println("Yay 6");
+			}
+
+			// under steady misses from many threads the spill file is still compacted, and nothing is lost
+			String[] lasts = new String[20];
+			for(int i = 0; i < 20; i++){
+				Planner planner = cache.get(i);
+				lasts[i] = planner.getEvent(planner.size() - 1).toString();
+			}
+			boolean[] whole = {true};
+			Thread[] churners = new Thread[4];
+			for(int i = 0; i < churners.length; i++){
+				int seed = i;
+				churners[i] = new Thread(() -> {
+					Random random = new Random(seed);
+					try{
+						for(int j = 0; j < 2000; j++){
+							int k = random.nextInt(20);
+							Planner planner = cache.get(k);
+							if(!planner.getEvent(planner.size() - 1).toString().equals(lasts[k])){
+								whole[0] = false;
+							}
+						}
+					}
+					catch(IOException e){
+						whole[0] = false;
+					}
+				});
+				churners[i].start();
+			}
+			for(Thread thread : churners){
+				thread.join();
+			}
+			if (whole[0] && cache.getEvictionCount() > 4000 && Files.size(path) < 4 << 20){
+				System.out.println("Yay 7");
+			}
+		}
+	}
+}
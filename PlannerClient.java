@@ -0,0 +1,556 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A client of PlannerServer. Requests can be pipelined: the send methods only buffer a request,
+ * flush() writes everything buffered in one go, and receive() decodes the oldest outstanding response.
+ * The blocking convenience methods do all three for a single request. A client is not thread-safe.
+ * The main method is a load generator reporting p50/p99 latencies.
+ * @author Hongjia Hao
+ */
+public class PlannerClient implements Closeable {
+
+	/**
+	 * Initial size of the read and write buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * One page of a RANGE reply.
+	 */
+	public static class Page {
+
+		/**
+		 * Events of this page, in ascending order.
+		 */
+		private final Event[] events;
+		/**
+		 * Skip of the next page, or -1 if this is the last one.
+		 */
+		private final int next;
+
+		/**
+		 * Constructor.
+		 * @param events	events
+		 * @param next	skip of the next page, or -1
+		 */
+		Page(Event[] events, int next){
+			this.events = events;
+			this.next = next;
+		}
+
+		/**
+		 * Report the events of this page.
+		 * @return	events in ascending order
+		 */
+		public Event[] getEvents(){
+			return events;
+		}
+
+		/**
+		 * Report where the next page starts.
+		 * @return	skip to pass to sendRange, or -1 if the range is exhausted
+		 */
+		public int getNext(){
+			return next;
+		}
+	}
+
+	/**
+	 * Connection.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * Responses read but not decoded yet.
+	 */
+	private ByteBuffer in;
+
+	/**
+	 * Requests not written yet.
+	 */
+	private ByteBuffer out;
+
+	/**
+	 * Opcodes of the requests still waiting for a response, oldest first.
+	 */
+	private final ArrayDeque<Byte> outstanding;
+
+	/**
+	 * Constructor. Connects to a server.
+	 * @param address	an InetSocketAddress or a UnixDomainSocketAddress
+	 * @throws IOException	cannot connect
+	 */
+	public PlannerClient(SocketAddress address) throws IOException{
+
+		if(address instanceof UnixDomainSocketAddress){
+			this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		}
+		else{
+			this.channel = SocketChannel.open();
+			this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		}
+		this.channel.connect(address);
+		this.in = ByteBuffer.allocate(BUFFER_SIZE);
+		this.in.flip();
+		this.out = ByteBuffer.allocate(BUFFER_SIZE);
+		this.outstanding = new ArrayDeque<>();
+	}
+
+	/**
+	 * Report the number of requests sent or buffered that have not been received yet.
+	 * @return	number of requests
+	 */
+	public int pending(){
+		return outstanding.size();
+	}
+
+	/**
+	 * Buffer a request to add an event.
+	 * @param id	planner id
+	 * @param event	event
+	 * @throws IOException	cannot flush
+	 * @throws IllegalArgumentException	valid event
+	 */
+	public void sendAdd(int id, Event event) throws IOException, IllegalArgumentException{
+
+		if(event == null){
+			throw new IllegalArgumentException("Null Event object!");
+		}
+		this.begin(PlannerProtocol.ADD, id, PlannerProtocol.eventSize(event));
+		PlannerProtocol.putEvent(out, event);
+	}
+
+	/**
+	 * Buffer a request to get an event.
+	 * @param id	planner id
+	 * @param index	index
+	 * @throws IOException	cannot flush
+	 */
+	public void sendGet(int id, int index) throws IOException{
+
+		this.begin(PlannerProtocol.GET, id, 4);
+		out.putInt(index);
+	}
+
+	/**
+	 * Buffer a request to move an event.
+	 * @param id	planner id
+	 * @param index	index
+	 * @param newStart	new start time
+	 * @throws IOException	cannot flush
+	 * @throws IllegalArgumentException	valid time
+	 */
+	public void sendMove(int id, int index, MyTime newStart) throws IOException, IllegalArgumentException{
+
+		if(newStart == null){
+			throw new IllegalArgumentException("Null Time object!");
+		}
+		this.begin(PlannerProtocol.MOVE, id, 6);
+		out.putInt(index);
+		PlannerProtocol.putTime(out, newStart);
+	}
+
+	/**
+	 * Buffer a request to remove an event.
+	 * @param id	planner id
+	 * @param index	index
+	 * @throws IOException	cannot flush
+	 */
+	public void sendRemove(int id, int index) throws IOException{
+
+		this.begin(PlannerProtocol.REMOVE, id, 4);
+		out.putInt(index);
+	}
+
+	/**
+	 * Buffer a request for the first page of events starting within [from, to].
+	 * @param id	planner id
+	 * @param from	first start time included
+	 * @param to	last start time included
+	 * @throws IOException	cannot flush
+	 * @throws IllegalArgumentException	valid times
+	 */
+	public void sendRange(int id, MyTime from, MyTime to) throws IOException, IllegalArgumentException{
+		this.sendRange(id, from, to, 0);
+	}
+
+	/**
+	 * Buffer a request for a page of events starting within [from, to].
+	 * @param id	planner id
+	 * @param from	first start time included
+	 * @param to	last start time included
+	 * @param skip	number of events of the range to skip, as given by Page.getNext()
+	 * @throws IOException	cannot flush
+	 * @throws IllegalArgumentException	valid times and skip
+	 */
+	public void sendRange(int id, MyTime from, MyTime to, int skip) throws IOException, IllegalArgumentException{
+
+		if(from == null || to == null){
+			throw new IllegalArgumentException("Null Time object!");
+		}
+		if(skip < 0){
+			throw new IllegalArgumentException("Skip cannot be negative!");
+		}
+		this.begin(PlannerProtocol.RANGE, id, 8);
+		PlannerProtocol.putTime(out, from);
+		PlannerProtocol.putTime(out, to);
+		out.putInt(skip);
+	}
+
+	/**
+	 * Start a request frame, flushing or growing the write buffer if needed.
+	 * @param op	opcode
+	 * @param id	planner id
+	 * @param payload	bytes following the planner id
+	 * @throws IOException	cannot flush
+	 */
+	private void begin(byte op, int id, int payload) throws IOException{
+
+		int bytes = 9 + payload;
+		if(out.remaining() < bytes){
+			this.flush();
+			if(out.capacity() < bytes){
+				out = ByteBuffer.allocate(bytes);
+			}
+		}
+		out.putInt(5 + payload).put(op).putInt(id);
+		outstanding.addLast(op);
+	}
+
+	/**
+	 * Write all buffered requests.
+	 * @throws IOException	cannot write
+	 */
+	public void flush() throws IOException{
+
+		out.flip();
+		while(out.hasRemaining()){
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Wait for and decode the oldest outstanding response.
+	 * @return	for ADD the new planner size; for GET the event or null; for MOVE and REMOVE whether it
+	 * 			succeeded; for RANGE a Page, or null if the server could not encode it
+	 * @throws IOException	cannot read, or the server reported a malformed request
+	 * @throws IllegalStateException	no outstanding request
+	 */
+	public Object receive() throws IOException, IllegalStateException{
+
+		if(outstanding.isEmpty()){
+			throw new IllegalStateException("No outstanding request!");
+		}
+		if(out.position() > 0){
+			this.flush();
+		}
+		ByteBuffer frame = this.readFrame();
+		byte op = outstanding.removeFirst();
+		byte status = frame.get();
+		if(status == PlannerProtocol.ERROR){
+			throw new IOException("Server rejected a malformed request!");
+		}
+		boolean ok = (status == PlannerProtocol.OK);
+		if(op == PlannerProtocol.ADD){
+			return frame.getInt();
+		}
+		else if(op == PlannerProtocol.GET){
+			return ok ? PlannerProtocol.getEvent(frame) : null;
+		}
+		else if(op == PlannerProtocol.RANGE){
+			if(!ok){
+				return null;
+			}
+			Event[] events = new Event[frame.getInt()];
+			for(int i = 0; i < events.length; i++){
+				events[i] = PlannerProtocol.getEvent(frame);
+			}
+			return new Page(events, frame.getInt());
+		}
+		return ok;
+	}
+
+	/**
+	 * Read one whole response frame.
+	 * @return	frame without its length
+	 * @throws IOException	cannot read
+	 */
+	private ByteBuffer readFrame() throws IOException{
+
+		this.fill(4);
+		int length = in.getInt();
+		if(length < 1 || length > PlannerProtocol.MAX_FRAME){
+			throw new IOException("Bad frame length " + length + "!");
+		}
+		this.fill(length);
+		ByteBuffer frame = in.slice(in.position(), length);
+		in.position(in.position() + length);
+		return frame;
+	}
+
+	/**
+	 * Read until at least the given number of bytes are available.
+	 * @param bytes	bytes needed
+	 * @throws IOException	cannot read
+	 */
+	private void fill(int bytes) throws IOException{
+
+		if(in.remaining() >= bytes){
+			return;
+		}
+		if(in.capacity() < bytes){
+			ByteBuffer bigger = ByteBuffer.allocate(bytes);
+			bigger.put(in);
+			in = bigger;
+		}
+		else{
+			in.compact();
+		}
+		while(in.position() < bytes){
+			if(channel.read(in) < 0){
+				throw new EOFException("Server closed the connection!");
+			}
+		}
+		in.flip();
+	}
+
+	/**
+	 * Add an event and wait for the reply.
+	 * @param id	planner id
+	 * @param event	event
+	 * @return	new size of the planner
+	 * @throws IOException	cannot communicate
+	 */
+	public int addEvent(int id, Event event) throws IOException{
+		this.sendAdd(id, event);
+		return (Integer)this.receive();
+	}
+
+	/**
+	 * Get an event and wait for the reply.
+	 * @param id	planner id
+	 * @param index	index
+	 * @return	the event at index, or null
+	 * @throws IOException	cannot communicate
+	 */
+	public Event getEvent(int id, int index) throws IOException{
+		this.sendGet(id, index);
+		return (Event)this.receive();
+	}
+
+	/**
+	 * Move an event and wait for the reply.
+	 * @param id	planner id
+	 * @param index	index
+	 * @param newStart	new start time
+	 * @return	true if successed
+	 * @throws IOException	cannot communicate
+	 */
+	public boolean moveEvent(int id, int index, MyTime newStart) throws IOException{
+		this.sendMove(id, index, newStart);
+		return (Boolean)this.receive();
+	}
+
+	/**
+	 * Remove an event and wait for the reply.
+	 * @param id	planner id
+	 * @param index	index
+	 * @return	true if successed
+	 * @throws IOException	cannot communicate
+	 */
+	public boolean removeEvent(int id, int index) throws IOException{
+		this.sendRemove(id, index);
+		return (Boolean)this.receive();
+	}
+
+	/**
+	 * Get the events starting within [from, to], page by page, and wait for the replies. Changes made
+	 * to the planner between two pages may make events be skipped or returned twice.
+	 * @param id	planner id
+	 * @param from	first start time included
+	 * @param to	last start time included
+	 * @return	events in ascending order, or null if the server could not encode one of them
+	 * @throws IOException	cannot communicate
+	 */
+	public Event[] getEventsInRange(int id, MyTime from, MyTime to) throws IOException{
+
+		List<Event> result = new ArrayList<>();
+		int skip = 0;
+		while(skip >= 0){
+			this.sendRange(id, from, to, skip);
+			Page page = (Page)this.receive();
+			if(page == null){
+				return null;
+			}
+			result.addAll(Arrays.asList(page.getEvents()));
+			skip = page.getNext();
+		}
+		return result.toArray(new Event[0]);
+	}
+
+	/**
+	 * Close the connection.
+	 * @throws IOException	cannot close
+	 */
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+
+	/**
+	 * Drive one connection with a pipelined mix of requests and record the latency of each one.
+	 * @param address	server address
+	 * @param id	planner id
+	 * @param depth	maximum requests in flight
+	 * @param latencies	filled with nanoseconds per request
+	 * @param seed	random seed
+	 * @throws IOException	cannot communicate
+	 */
+	private static void drive(SocketAddress address, int id, int depth, long[] latencies, long seed) throws IOException{
+
+		Random random = new Random(seed);
+		long[] sent = new long[depth];
+		try(PlannerClient client = new PlannerClient(address)){
+			int size = 0;
+			for(int i = 0; i < 1000; i++){
+				int start = random.nextInt(MyTime.MINUTES_PER_DAY - 60);
+				size = client.addEvent(id, new Event(MyTime.fromMinutes(start), MyTime.fromMinutes(start + 30), "load"));
+			}
+			int issued = 0;
+			int done = 0;
+			while(done < latencies.length){
+				while(issued < latencies.length && issued - done < depth){
+					int op = random.nextInt(100);
+					int index = random.nextInt(size);
+					int minute = random.nextInt(MyTime.MINUTES_PER_DAY - 60);
+					if(op < 60){
+						client.sendGet(id, index);
+					}
+					else if(op < 70){
+						client.sendRange(id, MyTime.fromMinutes(minute), MyTime.fromMinutes(minute + 9));
+					}
+					else if(op < 80){
+						client.sendAdd(id, new Event(MyTime.fromMinutes(minute), MyTime.fromMinutes(minute + 30), "load"));
+					}
+					else if(op < 90){
+						client.sendMove(id, index, MyTime.fromMinutes(minute));
+					}
+					else{
+						client.sendRemove(id, index);
+					}
+					sent[issued % depth] = System.nanoTime();
+					issued++;
+				}
+				client.flush();
+				client.receive();
+				latencies[done] = System.nanoTime() - sent[done % depth];
+				done++;
+			}
+		}
+	}
+
+	/**
+	 * Load generator. Arguments, all optional: server ("tcp" or "uds" to start one in this process,
+	 * a port or a socket path to use a running one), connections, pipeline depth, requests per connection.
+	 * An in-process server is first checked with 1 test case.
+	 * @param args	see above
+	 * @throws Exception	load failed
+	 */
+	public static void main(String[] args) throws Exception{
+
+		String target = args.length > 0 ? args[0] : "tcp";
+		int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		int requests = args.length > 3 ? Integer.parseInt(args[3]) : 200000;
+
+		PlannerServer server = null;
+		SocketAddress address;
+		if(target.equals("tcp")){
+			server = new PlannerServer();
+			address = server.getAddress();
+		}
+		else if(target.equals("uds")){
+			Path path = Files.createTempDirectory("planner").resolve("planner.sock");
+			server = new PlannerServer(UnixDomainSocketAddress.of(path));
+			address = server.getAddress();
+		}
+		else if(target.matches("\\d+")){
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(target));
+		}
+		else{
+			address = UnixDomainSocketAddress.of(target);
+		}
+		if(server != null){
+			server.start();
+
+			// an event too long to encode is refused, and the connection stays usable
+			Planner planner = server.getPlanner(-1);
+			synchronized(planner){
+				planner.addEvent(new Event(new MyTime(9, 0), new MyTime(10, 0), "x".repeat(70000)));
+				planner.addEvent(new Event(new MyTime(11, 0), new MyTime(12, 0), "short"));
+			}
+			try(PlannerClient client = new PlannerClient(address)){
+				if (client.getEvent(-1, 0) == null
+						&& client.getEventsInRange(-1, new MyTime(8, 0), new MyTime(12, 0)) == null
+						&& client.getEvent(-1, 1).getDescription().equals("short")
+						&& client.getEventsInRange(-1, new MyTime(10, 0), new MyTime(12, 0)).length == 1){
+					System.out.println("Yay 1");
+				}
+			}
+		}
+
+		long[][] latencies = new long[connections][requests];
+		Thread[] threads = new Thread[connections];
+		IOException[] failure = new IOException[1];
+		long begin = System.nanoTime();
+		for(int i = 0; i < connections; i++){
+			int id = i;
+			threads[i] = new Thread(() -> {
+				try{
+					drive(address, id, depth, latencies[id], 42 + id);
+				}
+				catch(IOException e){
+					failure[0] = e;
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		if(server != null){
+			server.close();
+		}
+		if(failure[0] != null){
+			throw failure[0];
+		}
+
+		long[] all = new long[connections * requests];
+		for(int i = 0; i < connections; i++){
+			System.arraycopy(latencies[i], 0, all, i * requests, requests);
+		}
+		Arrays.sort(all);
+		System.out.printf("%s, %d connections, depth %d: %.0f req/s, p50 %.1f us, p99 %.1f us%n",
+				address, connections, depth, all.length * 1e9 / elapsed,
+				all[all.length / 2] / 1e3, all[(int)(all.length * 0.99)] / 1e3);
+	}
+}
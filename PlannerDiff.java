@@ -0,0 +1,389 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The difference between two snapshots of a planner, as a list of operations that turns the old one
+ * into the new one. The diff is computed by walking both sorted event arrays in one merge pass: events
+ * only in the old planner are removed, events only in the new one are added, and events with the same
+ * start time whose end time or description changed are modified in place. The operations can be encoded
+ * in a compact binary form and applied to a replica holding the old snapshot, so replicating a change
+ * costs time and bytes proportional to the change rather than to the planner. Removals and modifications
+ * carry the old start time of their event, and a replica is checked against them before it is changed,
+ * so a replica that does not hold the old snapshot is rejected untouched unless it differs only in
+ * events the diff does not address or in end times and descriptions. Events sharing a start
+ * time are paired in order, so inserting or removing one in the middle of such a run shows up as
+ * modifications of the rest of the run.
+ * @author Hongjia Hao
+ */
+public class PlannerDiff {
+
+	/**
+	 * Add an event.
+	 */
+	public static final byte ADD = 0;
+	/**
+	 * Remove the event at an index of the old planner.
+	 */
+	public static final byte REMOVE = 1;
+	/**
+	 * Change the end time and description of the event at an index of the old planner.
+	 */
+	public static final byte MODIFY = 2;
+
+	/**
+	 * Kind of each operation.
+	 */
+	private final List<Byte> types;
+	/**
+	 * Old index for REMOVE and MODIFY, start minute for ADD.
+	 */
+	private final List<Integer> positions;
+	/**
+	 * Old start minute for REMOVE and MODIFY, to check the replica against.
+	 */
+	private final List<Integer> starts;
+	/**
+	 * End minute for ADD and MODIFY.
+	 */
+	private final List<Integer> ends;
+	/**
+	 * Description for ADD and MODIFY.
+	 */
+	private final List<String> descriptions;
+	/**
+	 * Size of the old planner.
+	 */
+	private final int oldSize;
+	/**
+	 * Size of the new planner.
+	 */
+	private final int newSize;
+
+	/**
+	 * Constructor.
+	 * @param oldSize	size of the old planner
+	 * @param newSize	size of the new planner
+	 */
+	private PlannerDiff(int oldSize, int newSize){
+
+		this.types = new ArrayList<>();
+		this.positions = new ArrayList<>();
+		this.starts = new ArrayList<>();
+		this.ends = new ArrayList<>();
+		this.descriptions = new ArrayList<>();
+		this.oldSize = oldSize;
+		this.newSize = newSize;
+	}
+
+	/**
+	 * Append an operation.
+	 * @param type	kind
+	 * @param position	old index or start minute
+	 * @param start	old start minute
+	 * @param end	end minute
+	 * @param description	description
+	 */
+	private void append(byte type, int position, int start, int end, String description){
+
+		types.add(type);
+		positions.add(position);
+		starts.add(start);
+		ends.add(end);
+		descriptions.add(description);
+	}
+
+	/**
+	 * Compute the operations turning one planner into another.
+	 * @param from	old planner
+	 * @param to	new planner
+	 * @return	diff
+	 * @throws IllegalArgumentException	valid planners
+	 */
+	public static PlannerDiff diff(Planner from, Planner to) throws IllegalArgumentException{
+
+		if(from == null || to == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		PlannerDiff result = new PlannerDiff(from.size(), to.size());
+		int i = 0;
+		int j = 0;
+		while(i < from.size() || j < to.size()){
+			Event before = (i < from.size()) ? from.getEvent(i) : null;
+			Event after = (j < to.size()) ? to.getEvent(j) : null;
+			int order = (before == null) ? 1 : (after == null) ? -1 : before.compareTo(after);
+			if(order < 0){
+				result.append(REMOVE, i, before.getStart().toMinutes(), 0, null);
+				i++;
+			}
+			else if(order > 0){
+				result.append(ADD, after.getStart().toMinutes(), 0, after.getEnd().toMinutes(), after.getDescription());
+				j++;
+			}
+			else{
+				if(before.getEnd().compareTo(after.getEnd()) != 0
+					|| !before.getDescription().equals(after.getDescription())){
+					result.append(MODIFY, i, before.getStart().toMinutes(), after.getEnd().toMinutes(),
+							after.getDescription());
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Report the number of operations.
+	 * @return	number of operations
+	 */
+	public int size(){
+		return types.size();
+	}
+
+	/**
+	 * Apply the operations to a planner holding the old snapshot. The replica is checked first and
+	 * left untouched if it does not match. Then modifications are applied, removals from the highest
+	 * index down, so every old index stays valid, and finally all additions in one bulk insert.
+	 * @param replica	planner equal to the old snapshot
+	 * @throws IllegalStateException	replica does not match the old snapshot
+	 * @throws IllegalArgumentException	valid replica and operations
+	 */
+	public void applyTo(Planner replica) throws IllegalStateException, IllegalArgumentException{
+
+		if(replica == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		if(replica.size() != oldSize){
+			throw new IllegalStateException("Replica does not match the old snapshot!");
+		}
+		List<Event> added = new ArrayList<>();
+		for(int k = 0; k < types.size(); k++){
+			if(types.get(k) == ADD){
+				added.add(new Event(MyTime.fromMinutes(positions.get(k)), MyTime.fromMinutes(ends.get(k)),
+						descriptions.get(k)));
+				continue;
+			}
+			int start = replica.getEvent(positions.get(k)).getStart().toMinutes();
+			if(start != starts.get(k)){
+				throw new IllegalStateException("Replica does not match the old snapshot!");
+			}
+			if(types.get(k) == MODIFY && (ends.get(k) < start || ends.get(k) >= MyTime.MINUTES_PER_DAY)){
+				throw new IllegalArgumentException("End time out of range!");
+			}
+		}
+		for(int k = 0; k < types.size(); k++){
+			if(types.get(k) == MODIFY){
+				int index = positions.get(k);
+				replica.changeDuration(index, ends.get(k) - starts.get(k));
+				replica.changeDescription(index, descriptions.get(k));
+			}
+		}
+		for(int k = types.size() - 1; k >= 0; k--){
+			if(types.get(k) == REMOVE){
+				replica.removeEvent(positions.get(k));
+			}
+		}
+		replica.addEvents(added.toArray(new Event[0]));
+	}
+
+	/**
+	 * Encode the diff. Integers are written as variable-length quantities, and old indexes and old start
+	 * minutes as the distance from the previous ones, so small changes take a few bytes each.
+	 * @return	bytes
+	 */
+	public byte[] encode(){
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		putVarint(out, oldSize);
+		putVarint(out, newSize);
+		putVarint(out, types.size());
+		int lastIndex = 0;
+		int lastStart = 0;
+		for(int k = 0; k < types.size(); k++){
+			byte type = types.get(k);
+			out.write(type);
+			if(type == ADD){
+				putVarint(out, positions.get(k));
+			}
+			else{
+				putVarint(out, positions.get(k) - lastIndex);
+				putVarint(out, starts.get(k) - lastStart);
+				lastIndex = positions.get(k);
+				lastStart = starts.get(k);
+			}
+			if(type != REMOVE){
+				putVarint(out, ends.get(k));
+				byte[] text = descriptions.get(k).getBytes(StandardCharsets.UTF_8);
+				putVarint(out, text.length);
+				out.write(text, 0, text.length);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode a diff produced by encode(). The operations are checked to be consistent with the sizes:
+	 * old indexes ascending and below the old size, and the additions and removals adding up to the
+	 * new size.
+	 * @param bytes	bytes
+	 * @return	diff
+	 * @throws IllegalArgumentException	malformed bytes
+	 */
+	public static PlannerDiff decode(byte[] bytes) throws IllegalArgumentException{
+
+		if(bytes == null){
+			throw new IllegalArgumentException("Null bytes!");
+		}
+		try{
+			ByteBuffer in = ByteBuffer.wrap(bytes);
+			PlannerDiff result = new PlannerDiff(getVarint(in), getVarint(in));
+			int count = getVarint(in);
+			int lastIndex = -1;
+			int lastStart = 0;
+			int size = result.oldSize;
+			for(int k = 0; k < count; k++){
+				byte type = in.get();
+				if(type != ADD && type != REMOVE && type != MODIFY){
+					throw new IllegalArgumentException("Unknown operation " + type + "!");
+				}
+				int position = getVarint(in);
+				int start = 0;
+				if(type != ADD){
+					position += Math.max(lastIndex, 0);
+					start = lastStart + getVarint(in);
+					if(position <= lastIndex || position >= result.oldSize){
+						throw new IllegalArgumentException("Index " + position + " out of order or range!");
+					}
+					lastIndex = position;
+					lastStart = start;
+				}
+				size += (type == ADD) ? 1 : (type == REMOVE) ? -1 : 0;
+				int end = 0;
+				String description = null;
+				if(type != REMOVE){
+					end = getVarint(in);
+					byte[] text = new byte[getVarint(in)];
+					in.get(text);
+					description = new String(text, StandardCharsets.UTF_8);
+				}
+				result.append(type, position, start, end, description);
+			}
+			if(size != result.newSize){
+				throw new IllegalArgumentException("Operations do not add up to the new size!");
+			}
+			return result;
+		}
+		catch(BufferUnderflowException | NegativeArraySizeException e){
+			throw new IllegalArgumentException("Truncated diff!");
+		}
+	}
+
+	/**
+	 * Decode a diff and apply it to a replica.
+	 * @param bytes	bytes produced by encode()
+	 * @param replica	planner equal to the old snapshot
+	 * @throws IllegalArgumentException	malformed bytes
+	 * @throws IllegalStateException	replica does not match the old snapshot
+	 */
+	public static void apply(byte[] bytes, Planner replica) throws IllegalArgumentException, IllegalStateException{
+		decode(bytes).applyTo(replica);
+	}
+
+	/**
+	 * Write a non-negative int in 7-bit groups, least significant first.
+	 * @param out	target
+	 * @param value	value
+	 */
+	private static void putVarint(ByteArrayOutputStream out, int value){
+
+		while((value & ~0x7F) != 0){
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Read an int written by putVarint.
+	 * @param in	source
+	 * @return	value
+	 * @throws IllegalArgumentException	malformed value
+	 */
+	private static int getVarint(ByteBuffer in) throws IllegalArgumentException{
+
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7){
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if(b >= 0){
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint!");
+	}
+
+	/**
+	 * 5 test cases.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		Planner primary = new Planner();
+		Planner replica = new Planner();
+		for(int i = 0; i < 1400; i++){
+			Event event = new Event(MyTime.fromMinutes(i), MyTime.fromMinutes(i + 30), "event " + i);
+			primary.addEvent(event);
+			replica.addEvent(new Event(event.getStart(), event.getEnd(), event.getDescription()));
+		}
+
+		// an unchanged planner has an empty diff
+		if (diff(primary, replica).size() == 0){
+			System.out.println("Yay 1");
+		}
+
+		// one change costs a few bytes
+		primary.changeDescription(700, "changed");
+		byte[] bytes = diff(replica, primary).encode();
+		if (bytes.length < 24){
+			System.out.println("Yay 2");
+		}
+
+		// apply on the replica
+		apply(bytes, replica);
+		if (replica.toString().equals(primary.toString())){
+			System.out.println("Yay 3");
+		}
+
+		// a mix of adds, removes, moves and equal start times
+		primary.removeEvent(0);
+		primary.moveEvent(10, new MyTime(3));
+		primary.addEvent(new Event(new MyTime(0), new MyTime(1), "midnight"));
+		primary.addEvent(new Event(new MyTime(0), new MyTime(2), "also midnight"));
+		primary.changeDuration(900, 5);
+		PlannerDiff delta = decode(diff(replica, primary).encode());
+		delta.applyTo(replica);
+		if (delta.size() == 5 && replica.toString().equals(primary.toString())){
+			System.out.println("Yay 4");
+		}
+
+		// a replica of the same size holding other events is rejected untouched
+		Planner stranger = new Planner();
+		for(int i = 0; i < replica.size(); i++){
+			stranger.addEvent(new Event(MyTime.fromMinutes(i), MyTime.fromMinutes(i), "other"));
+		}
+		String untouched = stranger.toString();
+		primary.changeDescription(1000, "late change");
+		try{
+			apply(diff(replica, primary).encode(), stranger);
+		}
+		catch(IllegalStateException e){
+			if (stranger.toString().equals(untouched)){
+				System.out.println("Yay 5");
+			}
+		}
+	}
+}
@@ -0,0 +1,242 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The undo/redo log of a planner. Instead of copies of the planner it records, for every change, just
+ * enough to apply the change again or to invert it: the positions involved and the values replaced.
+ * Changes made between Planner.beginEdit() and Planner.endEdit() form one group that is undone and
+ * redone as a unit. Only the most recent groups are kept, up to a fixed depth.
+ * @author Hongjia Hao
+ */
+class PlannerHistory {
+
+	/**
+	 * An event was inserted at index.
+	 */
+	static final int ADD = 0;
+	/**
+	 * The event at index was removed.
+	 */
+	static final int REMOVE = 1;
+	/**
+	 * The event at index was moved to a new start and now sits at target.
+	 */
+	static final int MOVE = 2;
+	/**
+	 * The duration of the event at index was changed.
+	 */
+	static final int DURATION = 3;
+	/**
+	 * The description of the event at index was changed.
+	 */
+	static final int DESCRIPTION = 4;
+
+	/**
+	 * One recorded change.
+	 */
+	static class Edit {
+
+		/**
+		 * Kind of change.
+		 */
+		final int type;
+		/**
+		 * Index of the event before the change.
+		 */
+		final int index;
+		/**
+		 * Index of the event after a move.
+		 */
+		final int target;
+		/**
+		 * Event inserted or removed.
+		 */
+		final Event event;
+		/**
+		 * Start time or duration in minutes before the change.
+		 */
+		final int before;
+		/**
+		 * Start time or duration in minutes after the change.
+		 */
+		final int after;
+		/**
+		 * Description before the change.
+		 */
+		final String oldDescription;
+		/**
+		 * Description after the change.
+		 */
+		final String newDescription;
+
+		/**
+		 * Constructor.
+		 * @param type	kind of change
+		 * @param index	index before the change
+		 * @param target	index after a move
+		 * @param event	event inserted or removed
+		 * @param before	start time or duration before
+		 * @param after	start time or duration after
+		 * @param oldDescription	description before
+		 * @param newDescription	description after
+		 */
+		Edit(int type, int index, int target, Event event, int before, int after,
+				String oldDescription, String newDescription){
+			this.type = type;
+			this.index = index;
+			this.target = target;
+			this.event = event;
+			this.before = before;
+			this.after = after;
+			this.oldDescription = oldDescription;
+			this.newDescription = newDescription;
+		}
+	}
+
+	/**
+	 * Maximum number of groups kept for undo.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * Groups that can be undone, most recent last.
+	 */
+	private final ArrayDeque<Edit[]> undoGroups;
+
+	/**
+	 * Groups that can be redone, most recently undone last.
+	 */
+	private final ArrayDeque<Edit[]> redoGroups;
+
+	/**
+	 * Edits of the group being recorded.
+	 */
+	private final List<Edit> current;
+
+	/**
+	 * Nesting level of open groups.
+	 */
+	private int openGroups;
+
+	/**
+	 * Constructor.
+	 * @param maxDepth	maximum number of groups kept
+	 * @throws IllegalArgumentException	depth at least 1
+	 */
+	PlannerHistory(int maxDepth) throws IllegalArgumentException{
+
+		if(maxDepth < 1){
+			throw new IllegalArgumentException("Depth must be at least 1!");
+		}
+		this.maxDepth = maxDepth;
+		this.undoGroups = new ArrayDeque<>();
+		this.redoGroups = new ArrayDeque<>();
+		this.current = new ArrayList<>();
+		this.openGroups = 0;
+	}
+
+	/**
+	 * Open a group. Groups may nest; only the outermost one is recorded.
+	 */
+	void begin(){
+		openGroups++;
+	}
+
+	/**
+	 * Close a group, recording it once the outermost group is closed.
+	 * @throws IllegalStateException	a group is open
+	 */
+	void end() throws IllegalStateException{
+
+		if(openGroups == 0){
+			throw new IllegalStateException("No edit group is open!");
+		}
+		openGroups--;
+		if(openGroups == 0 && !current.isEmpty()){
+			undoGroups.addLast(current.toArray(new Edit[0]));
+			current.clear();
+			if(undoGroups.size() > maxDepth){
+				undoGroups.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Record a change. Any undone groups can no longer be redone.
+	 * @param edit	change
+	 */
+	void record(Edit edit){
+
+		redoGroups.clear();
+		this.begin();
+		current.add(edit);
+		this.end();
+	}
+
+	/**
+	 * Take the most recent group for undoing; it becomes available for redo.
+	 * @return	group, or null if there is nothing to undo
+	 * @throws IllegalStateException	a group is open
+	 */
+	Edit[] undo() throws IllegalStateException{
+
+		if(openGroups > 0){
+			throw new IllegalStateException("Cannot undo inside an edit group!");
+		}
+		Edit[] group = undoGroups.pollLast();
+		if(group != null){
+			redoGroups.addLast(group);
+		}
+		return group;
+	}
+
+	/**
+	 * Take the most recently undone group for redoing; it becomes available for undo.
+	 * @return	group, or null if there is nothing to redo
+	 * @throws IllegalStateException	a group is open
+	 */
+	Edit[] redo() throws IllegalStateException{
+
+		if(openGroups > 0){
+			throw new IllegalStateException("Cannot redo inside an edit group!");
+		}
+		Edit[] group = redoGroups.pollLast();
+		if(group != null){
+			undoGroups.addLast(group);
+		}
+		return group;
+	}
+
+	/**
+	 * Report whether there is a group to undo.
+	 * @return	true if there is
+	 */
+	boolean canUndo(){
+		return !undoGroups.isEmpty();
+	}
+
+	/**
+	 * Report whether there is a group to redo.
+	 * @return	true if there is
+	 */
+	boolean canRedo(){
+		return !redoGroups.isEmpty();
+	}
+
+	/**
+	 * Report the maximum number of groups kept.
+	 * @return	depth
+	 */
+	int getMaxDepth(){
+		return maxDepth;
+	}
+
+	/**
+	 * Report whether nothing is recorded: nothing to undo or redo and no group open.
+	 * @return	true if empty
+	 */
+	boolean isEmpty(){
+		return undoGroups.isEmpty() && redoGroups.isEmpty() && current.isEmpty() && openGroups == 0;
+	}
+}
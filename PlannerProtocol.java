@@ -0,0 +1,155 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary wire format shared by PlannerServer and PlannerClient. Every frame starts with an int
+ * holding the number of bytes that follow it. A request continues with an opcode byte and the int id
+ * of the planner it addresses; a response continues with a status byte. Times travel as a short
+ * holding the minute of the day, descriptions as a short length followed by UTF-8 bytes. Responses
+ * are written in the order their requests arrived, so a client may pipeline requests freely.
+ * @author Hongjia Hao
+ */
+public final class PlannerProtocol {
+
+	/**
+	 * Add an event: start, end, description. Replies with the new size of the planner.
+	 */
+	public static final byte ADD = 1;
+	/**
+	 * Get the event at an int index. Replies with the event, or FAIL if there is none or it cannot be
+	 * encoded.
+	 */
+	public static final byte GET = 2;
+	/**
+	 * Move the event at an int index to a new start time.
+	 */
+	public static final byte MOVE = 3;
+	/**
+	 * Remove the event at an int index.
+	 */
+	public static final byte REMOVE = 4;
+	/**
+	 * Get the events starting within [from, to], both ends included, skipping the first int skip of
+	 * them. Replies with a count, the events, and the skip of the next page, or -1 when the range is
+	 * exhausted. A page ends before its response would exceed MAX_FRAME. Replies FAIL if an event of
+	 * the page cannot be encoded.
+	 */
+	public static final byte RANGE = 5;
+
+	/**
+	 * The request succeeded.
+	 */
+	public static final byte OK = 0;
+	/**
+	 * The planner rejected the request, e.g. an index out of bounds.
+	 */
+	public static final byte FAIL = 1;
+	/**
+	 * The request was malformed.
+	 */
+	public static final byte ERROR = 2;
+
+	/**
+	 * Largest frame accepted by either side.
+	 */
+	public static final int MAX_FRAME = 1 << 20;
+
+	/**
+	 * Largest string, in UTF-8 bytes, that fits its short length prefix.
+	 */
+	public static final int MAX_STRING = 0xFFFF;
+
+	/**
+	 * Not instantiable.
+	 */
+	private PlannerProtocol(){
+	}
+
+	/**
+	 * Write a time.
+	 * @param buffer	target
+	 * @param time	time
+	 */
+	public static void putTime(ByteBuffer buffer, MyTime time){
+		buffer.putShort((short)time.toMinutes());
+	}
+
+	/**
+	 * Read a time.
+	 * @param buffer	source
+	 * @return	time
+	 * @throws IllegalArgumentException	valid minute of the day
+	 */
+	public static MyTime getTime(ByteBuffer buffer) throws IllegalArgumentException{
+		return MyTime.fromMinutes(buffer.getShort());
+	}
+
+	/**
+	 * Write a string.
+	 * @param buffer	target
+	 * @param value	string
+	 * @throws IllegalArgumentException	at most 65535 bytes
+	 */
+	public static void putString(ByteBuffer buffer, String value) throws IllegalArgumentException{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > MAX_STRING){
+			throw new IllegalArgumentException("String too long!");
+		}
+		buffer.putShort((short)bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Read a string.
+	 * @param buffer	source
+	 * @return	string
+	 */
+	public static String getString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Number of bytes taken by an event on the wire.
+	 * @param event	event
+	 * @return	bytes
+	 */
+	public static int eventSize(Event event){
+		return 6 + event.getDescription().getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * Report whether an event can be written: its description must fit a short length prefix. Planners
+	 * accept descriptions of any length, so the server checks before it starts a reply.
+	 * @param event	event
+	 * @return	true if it can
+	 */
+	public static boolean isEncodable(Event event){
+		return event.getDescription().length() <= MAX_STRING / 3
+			|| event.getDescription().getBytes(StandardCharsets.UTF_8).length <= MAX_STRING;
+	}
+
+	/**
+	 * Write an event.
+	 * @param buffer	target
+	 * @param event	event
+	 */
+	public static void putEvent(ByteBuffer buffer, Event event){
+		putTime(buffer, event.getStart());
+		putTime(buffer, event.getEnd());
+		putString(buffer, event.getDescription());
+	}
+
+	/**
+	 * Read an event.
+	 * @param buffer	source
+	 * @return	event
+	 * @throws IllegalArgumentException	valid times
+	 */
+	public static Event getEvent(ByteBuffer buffer) throws IllegalArgumentException{
+		MyTime start = getTime(buffer);
+		MyTime end = getTime(buffer);
+		return new Event(start, end, getString(buffer));
+	}
+}
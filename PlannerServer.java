@@ -0,0 +1,408 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A query server that owns a set of planners, identified by int ids, and serves them to other processes
+ * over loopback TCP or a Unix domain socket using PlannerProtocol. Each connection is handled by its own
+ * thread doing blocking reads; on runtimes that support virtual threads that is a virtual thread, otherwise
+ * a pooled platform thread. All complete requests found in one read are answered before the batched
+ * responses are flushed with a single write.
+ * @author Hongjia Hao
+ */
+public class PlannerServer implements Closeable {
+
+	/**
+	 * Initial size of the per-connection read and write buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Planners served, by id.
+	 */
+	private final ConcurrentHashMap<Integer, Planner> planners;
+
+	/**
+	 * Listening channel.
+	 */
+	private final ServerSocketChannel server;
+
+	/**
+	 * Address the server is bound to.
+	 */
+	private final SocketAddress address;
+
+	/**
+	 * Runs one task per connection.
+	 */
+	private final ExecutorService connections;
+
+	/**
+	 * Open client channels, closed with the server.
+	 */
+	private final Set<SocketChannel> clients;
+
+	/**
+	 * Constructor. Binds to the given address.
+	 * @param address	an InetSocketAddress on loopback or a UnixDomainSocketAddress
+	 * @throws IOException	cannot bind
+	 * @throws IllegalArgumentException	valid address
+	 */
+	public PlannerServer(SocketAddress address) throws IOException, IllegalArgumentException{
+
+		if(address == null){
+			throw new IllegalArgumentException("Null address!");
+		}
+		if(address instanceof UnixDomainSocketAddress){
+			this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		}
+		else{
+			this.server = ServerSocketChannel.open();
+		}
+		this.server.bind(address);
+		this.address = this.server.getLocalAddress();
+		this.planners = new ConcurrentHashMap<>();
+		this.connections = newConnectionExecutor();
+		this.clients = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Constructor. Binds to an ephemeral port on the loopback interface.
+	 * @throws IOException	cannot bind
+	 */
+	public PlannerServer() throws IOException{
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	/**
+	 * Use a virtual thread per task when the runtime offers it, falling back to a cached pool of platform threads.
+	 * @return	executor
+	 */
+	private static ExecutorService newConnectionExecutor(){
+
+		try{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch(ReflectiveOperationException e){
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "planner-connection");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Report the address the server is bound to.
+	 * @return	address
+	 */
+	public SocketAddress getAddress(){
+		return this.address;
+	}
+
+	/**
+	 * Get the planner with the given id, creating it if needed. Callers in this process must
+	 * synchronize on the planner while using it.
+	 * @param id	planner id
+	 * @return	planner
+	 */
+	public Planner getPlanner(int id){
+		return planners.computeIfAbsent(id, key -> new Planner());
+	}
+
+	/**
+	 * Start accepting connections on a background thread.
+	 */
+	public void start(){
+
+		Thread acceptor = new Thread(() -> {
+			try{
+				while(true){
+					SocketChannel channel = server.accept();
+					clients.add(channel);
+					connections.execute(() -> this.serve(channel));
+				}
+			}
+			catch(IOException e){
+				// server closed
+			}
+		}, "planner-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Stop accepting connections and close all open ones.
+	 * @throws IOException	cannot close
+	 */
+	@Override
+	public void close() throws IOException{
+
+		server.close();
+		for(SocketChannel channel : clients){
+			channel.close();
+		}
+		connections.shutdownNow();
+		if(address instanceof UnixDomainSocketAddress){
+			Files.deleteIfExists(((UnixDomainSocketAddress)address).getPath());
+		}
+	}
+
+	/**
+	 * Serve one connection until the client closes it.
+	 * @param channel	client channel
+	 */
+	private void serve(SocketChannel channel){
+
+		ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+		ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+		try{
+			if(!(address instanceof UnixDomainSocketAddress)){
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			}
+			while(channel.read(in) >= 0){
+				in.flip();
+				while(in.remaining() >= 4){
+					int length = in.getInt(in.position());
+					if(length < 5 || length > PlannerProtocol.MAX_FRAME){
+						throw new IOException("Bad frame length " + length + "!");
+					}
+					if(in.remaining() < 4 + length){
+						break;
+					}
+					out = this.process(in.slice(in.position() + 4, length), out, channel);
+					in.position(in.position() + 4 + length);
+				}
+				in.compact();
+				if(in.position() >= 4 && in.getInt(0) + 4 > in.capacity()){
+					ByteBuffer bigger = ByteBuffer.allocate(in.getInt(0) + 4);
+					in.flip();
+					bigger.put(in);
+					in = bigger;
+				}
+				flush(out, channel);
+			}
+		}
+		catch(ClosedChannelException e){
+			// server closed
+		}
+		catch(IOException e){
+			// client gone or misbehaving; drop the connection
+		}
+		finally{
+			clients.remove(channel);
+			try{
+				channel.close();
+			}
+			catch(IOException e){
+				// already closed
+			}
+		}
+	}
+
+	/**
+	 * Answer one request, appending the response to the output buffer.
+	 * @param frame	request without its frame length
+	 * @param out	output buffer
+	 * @param channel	channel to flush to when the output buffer is full
+	 * @return	output buffer, possibly replaced by a larger one
+	 * @throws IOException	cannot flush
+	 */
+	private ByteBuffer process(ByteBuffer frame, ByteBuffer out, SocketChannel channel) throws IOException{
+
+		try{
+			byte op = frame.get();
+			int id = frame.getInt();
+			if(op == PlannerProtocol.ADD){
+				Event event = PlannerProtocol.getEvent(frame);
+				Planner planner = this.getPlanner(id);
+				int size;
+				synchronized(planner){
+					planner.addEvent(event);
+					size = planner.size();
+				}
+				out = reserve(out, channel, 9);
+				out.putInt(5).put(PlannerProtocol.OK).putInt(size);
+				return out;
+			}
+			Planner planner = planners.get(id);
+			if(op == PlannerProtocol.GET){
+				int index = frame.getInt();
+				Event event = null;
+				if(planner != null){
+					synchronized(planner){
+						event = planner.getEvent(index);
+						if(event != null){
+							event = new Event(event.getStart(), event.getEnd(), event.getDescription());
+						}
+					}
+				}
+				if(event == null || !PlannerProtocol.isEncodable(event)){
+					return status(out, channel, PlannerProtocol.FAIL);
+				}
+				int size = PlannerProtocol.eventSize(event);
+				out = reserve(out, channel, 5 + size);
+				out.putInt(1 + size).put(PlannerProtocol.OK);
+				PlannerProtocol.putEvent(out, event);
+				return out;
+			}
+			else if(op == PlannerProtocol.MOVE){
+				int index = frame.getInt();
+				MyTime newStart = PlannerProtocol.getTime(frame);
+				boolean moved = false;
+				if(planner != null){
+					synchronized(planner){
+						moved = planner.moveEvent(index, newStart);
+					}
+				}
+				return status(out, channel, moved ? PlannerProtocol.OK : PlannerProtocol.FAIL);
+			}
+			else if(op == PlannerProtocol.REMOVE){
+				int index = frame.getInt();
+				boolean removed = false;
+				if(planner != null){
+					synchronized(planner){
+						removed = planner.removeEvent(index);
+					}
+				}
+				return status(out, channel, removed ? PlannerProtocol.OK : PlannerProtocol.FAIL);
+			}
+			else if(op == PlannerProtocol.RANGE){
+				MyTime from = PlannerProtocol.getTime(frame);
+				MyTime to = PlannerProtocol.getTime(frame);
+				int skip = frame.getInt();
+				if(skip < 0){
+					return status(out, channel, PlannerProtocol.ERROR);
+				}
+				List<Event> page = new ArrayList<>();
+				int size = 9;
+				int next = -1;
+				if(planner != null){
+					synchronized(planner){
+						int first = planner.indexOf(from);
+						for(int i = first + Math.min(skip, planner.size() - first); i < planner.size(); i++){
+							Event event = planner.getEvent(i);
+							if(event.getStart().compareTo(to) > 0){
+								break;
+							}
+							if(!PlannerProtocol.isEncodable(event)){
+								return status(out, channel, PlannerProtocol.FAIL);
+							}
+							int bytes = PlannerProtocol.eventSize(event);
+							if(size + bytes > PlannerProtocol.MAX_FRAME){
+								next = skip + page.size();
+								break;
+							}
+							page.add(new Event(event.getStart(), event.getEnd(), event.getDescription()));
+							size += bytes;
+						}
+					}
+				}
+				out = reserve(out, channel, 4 + size);
+				out.putInt(size).put(PlannerProtocol.OK).putInt(page.size());
+				for(Event event : page){
+					PlannerProtocol.putEvent(out, event);
+				}
+				out.putInt(next);
+				return out;
+			}
+			return status(out, channel, PlannerProtocol.ERROR);
+		}
+		catch(BufferUnderflowException | IllegalArgumentException e){
+			return status(out, channel, PlannerProtocol.ERROR);
+		}
+	}
+
+	/**
+	 * Append a response consisting of a status only.
+	 * @param out	output buffer
+	 * @param channel	channel to flush to
+	 * @param status	status
+	 * @return	output buffer
+	 * @throws IOException	cannot flush
+	 */
+	private static ByteBuffer status(ByteBuffer out, SocketChannel channel, byte status) throws IOException{
+
+		out = reserve(out, channel, 5);
+		out.putInt(1).put(status);
+		return out;
+	}
+
+	/**
+	 * Make room for the given number of bytes, flushing or growing the output buffer.
+	 * @param out	output buffer
+	 * @param channel	channel to flush to
+	 * @param bytes	bytes needed
+	 * @return	output buffer with enough room
+	 * @throws IOException	cannot flush
+	 */
+	private static ByteBuffer reserve(ByteBuffer out, SocketChannel channel, int bytes) throws IOException{
+
+		if(out.remaining() >= bytes){
+			return out;
+		}
+		flush(out, channel);
+		if(out.capacity() < bytes){
+			return ByteBuffer.allocate(bytes);
+		}
+		return out;
+	}
+
+	/**
+	 * Write out everything buffered.
+	 * @param out	output buffer
+	 * @param channel	channel
+	 * @throws IOException	cannot write
+	 */
+	private static void flush(ByteBuffer out, SocketChannel channel) throws IOException{
+
+		out.flip();
+		while(out.hasRemaining()){
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Serve planners until the process is killed.
+	 * @param args	a port number, or a path for a Unix domain socket
+	 * @throws IOException	cannot bind
+	 * @throws InterruptedException	interrupted
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException{
+
+		SocketAddress address;
+		if(args.length == 0){
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7070);
+		}
+		else if(args[0].matches("\\d+")){
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+		}
+		else{
+			address = UnixDomainSocketAddress.of(args[0]);
+		}
+		PlannerServer server = new PlannerServer(address);
+		server.start();
+		System.out.println("Serving planners on " + server.getAddress());
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,224 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A macro load generator and soak test for Planner. It fills a planner with a given number of events,
+ * replays a PlannerWorkload against it at a target rate, and reports throughput, latency percentiles per
+ * operation and the allocation rate, then checks that the planner is still sorted and has the expected size.
+ * When a target rate is set, latency is measured from the time each operation was due rather than when it
+ * actually started, so stalls are not hidden by the operations queued behind them.
+ * @author Hongjia Hao
+ */
+public class PlannerSoak {
+
+	/**
+	 * A latency histogram with logarithmic buckets, each split into 16 linear sub-buckets, so percentiles
+	 * are accurate to about 6% whatever the number of samples.
+	 */
+	static class Histogram {
+
+		/**
+		 * Sample counts.
+		 */
+		private final long[] counts = new long[64 * 16];
+
+		/**
+		 * Number of samples.
+		 */
+		private long total;
+
+		/**
+		 * Add a sample.
+		 * @param nanos	latency
+		 */
+		void record(long nanos){
+
+			counts[bucket(Math.max(nanos, 1))]++;
+			total++;
+		}
+
+		/**
+		 * Report the number of samples.
+		 * @return	samples
+		 */
+		long count(){
+			return total;
+		}
+
+		/**
+		 * Find the bucket of a value.
+		 * @param value	positive value
+		 * @return	bucket
+		 */
+		private static int bucket(long value){
+
+			int magnitude = 63 - Long.numberOfLeadingZeros(value);
+			if(magnitude < 4){
+				return (int)value;
+			}
+			return magnitude * 16 + (int)((value >>> (magnitude - 4)) & 15);
+		}
+
+		/**
+		 * Find the largest value of a bucket.
+		 * @param bucket	bucket
+		 * @return	value
+		 */
+		private static long upperBound(int bucket){
+
+			int magnitude = bucket / 16;
+			if(magnitude < 4){
+				return bucket;
+			}
+			return ((16L + (bucket & 15) + 1) << (magnitude - 4)) - 1;
+		}
+
+		/**
+		 * Report a percentile.
+		 * @param percentile	within [0, 100]
+		 * @return	nanoseconds
+		 */
+		long percentile(double percentile){
+
+			long rank = (long)Math.ceil(total * percentile / 100);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++){
+				seen += counts[i];
+				if(seen >= rank && seen > 0){
+					return upperBound(i);
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Report the bytes allocated so far by the current thread, if the JVM can tell.
+	 * @return	bytes, or -1
+	 */
+	private static long allocatedBytes(){
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean){
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Check that the planner is sorted and every event is well-formed.
+	 * @param planner	planner
+	 * @return	null if it is, otherwise a description of the first violation
+	 */
+	static String checkInvariants(Planner planner){
+
+		for(int i = 0; i < planner.size(); i++){
+			Event event = planner.getEvent(i);
+			if(event == null || event.getEnd().compareTo(event.getStart()) < 0){
+				return "malformed event at " + i;
+			}
+			if(i > 0 && planner.getEvent(i - 1).compareTo(event) > 0){
+				return "not sorted at " + i;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Run a soak test. Arguments, all optional: initial events (default 10^5), operations (default 10^6),
+	 * target operations per second (default 0, unthrottled), mix as five comma-separated weights for
+	 * get,add,move,duration,remove (default 60,20,10,5,5), skew (default 2), seed (default 1).
+	 * @param args	see above
+	 */
+	public static void main(String[] args){
+
+		int events = args.length > 0 ? (int)Double.parseDouble(args[0]) : 100000;
+		long operations = args.length > 1 ? (long)Double.parseDouble(args[1]) : 1000000;
+		double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		int[] mix = PlannerWorkload.DEFAULT_MIX;
+		if(args.length > 3){
+			String[] weights = args[3].split(",");
+			mix = new int[weights.length];
+			for(int i = 0; i < weights.length; i++){
+				mix[i] = Integer.parseInt(weights[i].trim());
+			}
+		}
+		double skew = args.length > 4 ? Double.parseDouble(args[4]) : 2;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+		long begin = System.nanoTime();
+		Planner planner = PlannerWorkload.populate(events, seed);
+		System.out.printf("populated %d events in %.0f ms%n", planner.size(), (System.nanoTime() - begin) / 1e6);
+
+		PlannerWorkload workload = new PlannerWorkload(seed + 1, mix, skew);
+		Histogram[] latencies = new Histogram[PlannerWorkload.NAMES.length];
+		for(int i = 0; i < latencies.length; i++){
+			latencies[i] = new Histogram();
+		}
+		Histogram all = new Histogram();
+		long expectedSize = planner.size();
+		long interval = (rate > 0) ? (long)(1e9 / rate) : 0;
+		long allocatedBefore = allocatedBytes();
+		begin = System.nanoTime();
+		for(long k = 0; k < operations; k++){
+			int op = workload.next(planner.size());
+			long due = System.nanoTime();
+			if(interval > 0){
+				due = begin + k * interval;
+				while(System.nanoTime() < due){
+					LockSupport.parkNanos(due - System.nanoTime());
+				}
+			}
+			if(op == PlannerWorkload.GET){
+				planner.getEvent(workload.getIndex());
+			}
+			else if(op == PlannerWorkload.ADD){
+				planner.addEvent(workload.newEvent());
+				expectedSize++;
+			}
+			else if(op == PlannerWorkload.MOVE){
+				planner.moveEvent(workload.getIndex(), workload.getTime());
+			}
+			else if(op == PlannerWorkload.DURATION){
+				planner.changeDuration(workload.getIndex(), workload.getDuration());
+			}
+			else if(planner.removeEvent(workload.getIndex())){
+				expectedSize--;
+			}
+			long latency = System.nanoTime() - due;
+			latencies[op].record(latency);
+			all.record(latency);
+		}
+		long elapsed = System.nanoTime() - begin;
+		long allocated = allocatedBytes() - allocatedBefore;
+
+		System.out.printf("%d operations in %.0f ms: %.0f ops/s", operations, elapsed / 1e6, operations * 1e9 / elapsed);
+		if(allocatedBefore >= 0){
+			System.out.printf(", %.1f MB/s allocated, %.0f bytes/op", allocated / (elapsed / 1e9) / 1e6,
+					(double)allocated / Math.max(operations, 1));
+		}
+		System.out.println();
+		System.out.printf("%-9s %10s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p99.9 us", "max us");
+		for(int i = 0; i <= latencies.length; i++){
+			Histogram histogram = (i < latencies.length) ? latencies[i] : all;
+			if(histogram.count() == 0){
+				continue;
+			}
+			System.out.printf("%-9s %10d %10.2f %10.2f %10.2f %10.2f%n",
+					(i < latencies.length) ? PlannerWorkload.NAMES[i] : "all", histogram.count(),
+					histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3,
+					histogram.percentile(99.9) / 1e3, histogram.percentile(100) / 1e3);
+		}
+
+		String violation = checkInvariants(planner);
+		if(violation == null && planner.size() != expectedSize){
+			violation = "size " + planner.size() + " but expected " + expectedSize;
+		}
+		if(violation != null){
+			System.out.println("INVARIANT VIOLATED: " + violation);
+			System.exit(1);
+		}
+		System.out.println("invariants hold: sorted, size " + planner.size());
+	}
+}
@@ -0,0 +1,220 @@
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A cache of data derived from a planner. Each view is a named computation over the planner; its result
+ * is remembered together with the planner's version and handed out again until the planner changes.
+ * Results are held through soft references, so the garbage collector may drop them when memory runs low,
+ * in which case they are simply computed again. Five views are built in; callers can register their own.
+ * @author Hongjia Hao
+ */
+public class PlannerViews {
+
+	/**
+	 * The planner's toString().
+	 */
+	public static final String TEXT = "text";
+	/**
+	 * Number of minutes covered by at least one event, as an Integer.
+	 */
+	public static final String BUSY_MINUTES = "busyMinutes";
+	/**
+	 * The first event, or null.
+	 */
+	public static final String FIRST = "first";
+	/**
+	 * The last event, or null.
+	 */
+	public static final String LAST = "last";
+	/**
+	 * The events overlapping at least one other event, as an Event[].
+	 */
+	public static final String CONFLICTS = "conflicts";
+
+	/**
+	 * A computed result and the planner version it was computed at.
+	 */
+	private static class Entry {
+
+		/**
+		 * Planner version.
+		 */
+		private final long version;
+		/**
+		 * Result.
+		 */
+		private final Object value;
+
+		/**
+		 * Constructor.
+		 * @param version	planner version
+		 * @param value	result
+		 */
+		Entry(long version, Object value){
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Planner the views are derived from.
+	 */
+	private final Planner planner;
+
+	/**
+	 * Registered computations, by name.
+	 */
+	private final Map<String, Function<Planner, ?>> computations;
+
+	/**
+	 * Cached results, by name.
+	 */
+	private final Map<String, SoftReference<Entry>> cache;
+
+	/**
+	 * Constructor. Registers the built-in views.
+	 * @param planner	planner
+	 * @throws IllegalArgumentException	valid planner
+	 */
+	public PlannerViews(Planner planner) throws IllegalArgumentException{
+
+		if(planner == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		this.planner = planner;
+		this.computations = new HashMap<>();
+		this.cache = new HashMap<>();
+		this.register(TEXT, Planner::toString);
+		this.register(BUSY_MINUTES, PlannerViews::busyMinutes);
+		this.register(FIRST, p -> p.getEvent(0));
+		this.register(LAST, p -> p.getEvent(p.size() - 1));
+		this.register(CONFLICTS, PlannerViews::conflicts);
+	}
+
+	/**
+	 * Register a view, replacing any view with the same name.
+	 * @param name	name
+	 * @param computation	computation over the planner
+	 * @throws IllegalArgumentException	valid name and computation
+	 */
+	public void register(String name, Function<Planner, ?> computation) throws IllegalArgumentException{
+
+		if(name == null || computation == null){
+			throw new IllegalArgumentException("Null name or computation!");
+		}
+		computations.put(name, computation);
+		cache.remove(name);
+	}
+
+	/**
+	 * Get a view, computing it only if the planner changed since it was last computed.
+	 * @param <V>	type of the view
+	 * @param name	name
+	 * @return	result
+	 * @throws IllegalArgumentException	registered name
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(String name) throws IllegalArgumentException{
+
+		Function<Planner, ?> computation = computations.get(name);
+		if(computation == null){
+			throw new IllegalArgumentException("No view named " + name + "!");
+		}
+		SoftReference<Entry> reference = cache.get(name);
+		Entry entry = (reference == null) ? null : reference.get();
+		if(entry == null || entry.version != planner.getVersion()){
+			entry = new Entry(planner.getVersion(), computation.apply(planner));
+			cache.put(name, new SoftReference<>(entry));
+		}
+		return (V)entry.value;
+	}
+
+	/**
+	 * Drop all cached results.
+	 */
+	public void clear(){
+		cache.clear();
+	}
+
+	/**
+	 * Count the minutes covered by at least one event.
+	 * @param planner	planner
+	 * @return	minutes
+	 */
+	public static int busyMinutes(Planner planner){
+
+		int total = 0;
+		int cursor = 0;
+		for(int i = 0; i < planner.size(); i++){
+			Event event = planner.getEvent(i);
+			int start = Math.max(cursor, event.getStart().toMinutes());
+			int end = event.getEnd().toMinutes();
+			if(end > start){
+				total += end - start;
+				cursor = end;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Find the events overlapping at least one other event, as ConflictScanner defines it: events that
+	 * only touch do not overlap, and events of zero length overlap nothing.
+	 * @param planner	planner
+	 * @return	events in planner order
+	 */
+	public static Event[] conflicts(Planner planner){
+		return ConflictScanner.findConflicts(planner);
+	}
+
+	/**
+	 * 4 test cases.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		Planner day = new Planner();
+		day.addEvent(new Event(new MyTime(9), new MyTime(11), "workshop"));
+		day.addEvent(new Event(new MyTime(10), new MyTime(10, 30), "call"));
+		day.addEvent(new Event(new MyTime(12), new MyTime(13), "lunch"));
+		PlannerViews views = new PlannerViews(day);
+
+		// repeated reads of an unchanged planner return the cached result
+		String text = views.get(TEXT);
+		if (text.equals(day.toString()) && views.get(TEXT) == text
+			&& (Integer)views.get(BUSY_MINUTES) == 180){
+			System.out.println("Yay 1");
+		}
+
+		// conflicts, first and last
+		Event[] conflicts = views.get(CONFLICTS);
+		if (conflicts.length == 2 && conflicts[0] == day.getEvent(0) && conflicts[1] == day.getEvent(1)
+			&& views.get(FIRST) == day.getEvent(0) && views.get(LAST) == day.getEvent(2)){
+			System.out.println("Yay 2");
+		}
+
+		// a write invalidates every view
+		long version = day.getVersion();
+		day.changeDuration(2, 90);
+		if (day.getVersion() != version && views.get(TEXT) != text
+			&& (Integer)views.get(BUSY_MINUTES) == 210){
+			System.out.println("Yay 3");
+		}
+
+		// caller-registered views
+		int[] calls = new int[1];
+		views.register("count", p -> {
+			calls[0]++;
+			return p.size();
+		});
+		views.get("count");
+		views.get("count");
+		day.removeEvent(0);
+		views.get("count");
+		if (calls[0] == 2){
+			System.out.println("Yay 4");
+		}
+	}
+}
@@ -0,0 +1,220 @@
+import java.util.SplittableRandom;
+
+/**
+ * A seeded, deterministic generator of planner operations. Each call to next() picks an operation
+ * according to a configurable mix and draws its operands; the same seed, mix and planner sizes always
+ * produce the same sequence. Indexes are skewed towards the front of the planner, so a few events are hot
+ * and most are cold, as with real keys.
+ * @author Hongjia Hao
+ */
+public class PlannerWorkload {
+
+	/**
+	 * getEvent(index).
+	 */
+	public static final int GET = 0;
+	/**
+	 * addEvent(new event).
+	 */
+	public static final int ADD = 1;
+	/**
+	 * moveEvent(index, minute).
+	 */
+	public static final int MOVE = 2;
+	/**
+	 * changeDuration(index, duration).
+	 */
+	public static final int DURATION = 3;
+	/**
+	 * removeEvent(index).
+	 */
+	public static final int REMOVE = 4;
+
+	/**
+	 * Names of the operations, by code.
+	 */
+	public static final String[] NAMES = {"get", "add", "move", "duration", "remove"};
+
+	/**
+	 * The production mix: 60% get, 20% add, 10% move, 5% duration, 5% remove.
+	 */
+	public static final int[] DEFAULT_MIX = {60, 20, 10, 5, 5};
+
+	/**
+	 * Longest duration drawn, in minutes.
+	 */
+	private static final int MAX_DURATION = 120;
+
+	/**
+	 * Random source.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Cumulative weights of the operations.
+	 */
+	private final int[] cumulative;
+
+	/**
+	 * Skew exponent: 1 is uniform, larger values concentrate on the first indexes.
+	 */
+	private final double skew;
+
+	/**
+	 * Index operand of the last operation.
+	 */
+	private int index;
+
+	/**
+	 * Minute operand of the last operation.
+	 */
+	private int minute;
+
+	/**
+	 * Duration operand of the last operation.
+	 */
+	private int duration;
+
+	/**
+	 * Constructor.
+	 * @param seed	random seed
+	 * @param mix	relative weights of GET, ADD, MOVE, DURATION and REMOVE
+	 * @param skew	skew exponent, at least 1
+	 * @throws IllegalArgumentException	valid mix and skew
+	 */
+	public PlannerWorkload(long seed, int[] mix, double skew) throws IllegalArgumentException{
+
+		if(mix == null || mix.length != NAMES.length){
+			throw new IllegalArgumentException("Mix must have " + NAMES.length + " weights!");
+		}
+		if(skew < 1){
+			throw new IllegalArgumentException("Skew must be at least 1!");
+		}
+		this.random = new SplittableRandom(seed);
+		this.cumulative = new int[mix.length];
+		int total = 0;
+		for(int i = 0; i < mix.length; i++){
+			if(mix[i] < 0){
+				throw new IllegalArgumentException("Weights must be non-negative!");
+			}
+			total += mix[i];
+			cumulative[i] = total;
+		}
+		if(total == 0){
+			throw new IllegalArgumentException("Weights cannot all be zero!");
+		}
+		this.skew = skew;
+	}
+
+	/**
+	 * Constructor with the default mix and skew.
+	 * @param seed	random seed
+	 */
+	public PlannerWorkload(long seed){
+		this(seed, DEFAULT_MIX, 2);
+	}
+
+	/**
+	 * Pick the next operation and draw its operands. An empty planner always gets an ADD.
+	 * @param size	current size of the planner
+	 * @return	operation code
+	 */
+	public int next(int size){
+
+		int pick = random.nextInt(cumulative[cumulative.length - 1]);
+		int op = 0;
+		while(pick >= cumulative[op]){
+			op++;
+		}
+		if(size == 0){
+			op = ADD;
+		}
+		index = (size == 0) ? 0 : (int)(size * Math.pow(random.nextDouble(), skew));
+		duration = random.nextInt(MAX_DURATION + 1);
+		minute = random.nextInt(MyTime.MINUTES_PER_DAY - duration);
+		return op;
+	}
+
+	/**
+	 * Get the index operand.
+	 * @return	index
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	/**
+	 * Get the start time operand.
+	 * @return	time
+	 */
+	public MyTime getTime(){
+		return MyTime.fromMinutes(minute);
+	}
+
+	/**
+	 * Get the duration operand.
+	 * @return	minutes
+	 */
+	public int getDuration(){
+		return duration;
+	}
+
+	/**
+	 * Create the event for an ADD.
+	 * @return	event
+	 */
+	public Event newEvent(){
+		return new Event(MyTime.fromMinutes(minute), MyTime.fromMinutes(minute + duration), "load");
+	}
+
+	/**
+	 * Create a planner holding the given number of random events, inserted with one bulk merge.
+	 * @param count	number of events
+	 * @param seed	random seed
+	 * @return	planner
+	 */
+	public static Planner populate(int count, long seed){
+
+		PlannerWorkload workload = new PlannerWorkload(seed);
+		Event[] batch = new Event[count];
+		for(int i = 0; i < count; i++){
+			workload.next(0);
+			batch[i] = workload.newEvent();
+		}
+		Planner planner = new Planner();
+		planner.addEvents(batch);
+		return planner;
+	}
+
+	/**
+	 * 2 test cases.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		// the same seed gives the same sequence
+		PlannerWorkload first = new PlannerWorkload(7);
+		PlannerWorkload second = new PlannerWorkload(7);
+		boolean same = true;
+		for(int i = 0; i < 1000; i++){
+			same &= first.next(100) == second.next(100) && first.getIndex() == second.getIndex()
+				&& first.getTime().compareTo(second.getTime()) == 0 && first.getDuration() == second.getDuration();
+		}
+		if (same){
+			System.out.println("Yay 1");
+		}
+
+		// the mix is respected and indexes are skewed towards the front
+		int[] counts = new int[NAMES.length];
+		int front = 0;
+		for(int i = 0; i < 100000; i++){
+			counts[first.next(1000)]++;
+			if(first.getIndex() < 250){
+				front++;
+			}
+		}
+		if (Math.abs(counts[GET] - 60000) < 1000 && Math.abs(counts[REMOVE] - 5000) < 500 && front > 45000){
+			System.out.println("Yay 2");
+		}
+	}
+}
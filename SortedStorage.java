@@ -0,0 +1,87 @@
+import java.util.Comparator;
+
+/**
+ * The storage of a sorted collection, as used by the day planner. Elements are kept in ascending order;
+ * add(value) places a value after any elements equal to it. MySortedArray is the default implementation.
+ * @author Hongjia Hao
+ * @param <T> Generic class
+ */
+public interface SortedStorage<T extends Comparable<T>> {
+
+	/**
+	 * Report the current number of elements.
+	 * @return size
+	 */
+	int size();
+
+	/**
+	 * Report max number of elements before the next expansion.
+	 * @return	capacity
+	 */
+	int capacity();
+
+	/**
+	 * Report the ordering of the elements.
+	 * @return	comparator, or null for the natural ordering
+	 */
+	Comparator<? super T> comparator();
+
+	/**
+	 * Create an empty storage of the same kind, set up like this one: same ordering and options.
+	 * @return	empty storage
+	 */
+	SortedStorage<T> emptyCopy();
+
+	/**
+	 * Insert the given value and keep the storage sorted.
+	 * @param value	given value
+	 * @throws IllegalStateException	maxium capacity
+	 * @throws IllegalArgumentException	vaild value
+	 */
+	void add(T value) throws IllegalStateException, IllegalArgumentException;
+
+	/**
+	 * Insert the given value at the given index if that keeps the storage sorted.
+	 * @param index	index
+	 * @param value value
+	 * @return	true if sucessed, false if not
+	 * @throws IndexOutOfBoundsException	vaild index
+	 * @throws IllegalArgumentException		vaild value
+	 * @throws IllegalStateException		vaild capacity
+	 */
+	boolean add(int index, T value) throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException;
+
+	/**
+	 * Insert all the given values with one merge, keeping the storage sorted.
+	 * @param values	given values
+	 * @throws IllegalStateException	maxium capacity
+	 * @throws IllegalArgumentException	vaild values
+	 */
+	void addAll(T[] values) throws IllegalStateException, IllegalArgumentException;
+
+	/**
+	 * Return the item at the given index.
+	 * @param index	index
+	 * @return		value
+	 * @throws IndexOutOfBoundsException	vaild index
+	 */
+	T get(int index) throws IndexOutOfBoundsException;
+
+	/**
+	 * Change the item at the given index to be the given value if that keeps the storage sorted.
+	 * @param index	index
+	 * @param value	value
+	 * @return	true if sucessed, false if not
+	 * @throws IndexOutOfBoundsException	vaild index
+	 * @throws IllegalArgumentException		vaild value
+	 */
+	boolean replace(int index, T value) throws IndexOutOfBoundsException, IllegalArgumentException;
+
+	/**
+	 * Remove and return the element at the given index.
+	 * @param index	index
+	 * @return	deleted item
+	 * @throws IndexOutOfBoundsException	vaild index
+	 */
+	T delete(int index) throws IndexOutOfBoundsException;
+}
@@ -0,0 +1,305 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * An auto-scheduler that packs flexible tasks into the free time of a planner. It keeps an index of
+ * the free gaps of the day, keyed by the minute each gap starts, so finding a placement only visits the
+ * gaps inside a task's window instead of re-checking every event. Placements found by schedule() are
+ * committed to the planner with one bulk insert.
+ * @author Hongjia Hao
+ */
+public class TaskScheduler {
+
+	/**
+	 * How a task picks among the gaps that can hold it.
+	 */
+	public enum Strategy {
+		/**
+		 * The earliest start time within the window.
+		 */
+		EARLIEST_FIT,
+		/**
+		 * The smallest gap that can hold the task, at its earliest start within the window.
+		 */
+		BEST_FIT
+	}
+
+	/**
+	 * A task to be placed: a duration that must fit between an earliest start and a latest end.
+	 */
+	public static class Task {
+
+		/**
+		 * Duration in minutes.
+		 */
+		private final int duration;
+		/**
+		 * Earliest start time.
+		 */
+		private final MyTime earliest;
+		/**
+		 * Latest end time.
+		 */
+		private final MyTime latest;
+		/**
+		 * Description of the event created for this task.
+		 */
+		private final String description;
+
+		/**
+		 * Constructor.
+		 * @param duration	minutes, at least 1
+		 * @param earliest	earliest start time
+		 * @param latest	latest end time
+		 * @param description	description
+		 * @throws IllegalArgumentException	the window must hold the duration
+		 */
+		public Task(int duration, MyTime earliest, MyTime latest, String description) throws IllegalArgumentException{
+
+			if(earliest == null || latest == null){
+				throw new IllegalArgumentException("Null Time object!");
+			}
+			if(duration < 1 || earliest.getDuration(latest) < duration){
+				throw new IllegalArgumentException("Duration must be positive and fit between earliest and latest!");
+			}
+			this.duration = duration;
+			this.earliest = earliest;
+			this.latest = latest;
+			this.description = description;
+		}
+
+		/**
+		 * Get duration.
+		 * @return	minutes
+		 */
+		public int getDuration(){
+			return duration;
+		}
+
+		/**
+		 * Get earliest start time.
+		 * @return	time
+		 */
+		public MyTime getEarliest(){
+			return earliest;
+		}
+
+		/**
+		 * Get latest end time.
+		 * @return	time
+		 */
+		public MyTime getLatest(){
+			return latest;
+		}
+
+		/**
+		 * Get description.
+		 * @return	description
+		 */
+		public String getDescription(){
+			return description;
+		}
+	}
+
+	/**
+	 * Free gaps of the day: start minute to end minute (exclusive).
+	 */
+	private final TreeMap<Integer, Integer> gaps;
+
+	/**
+	 * Constructor. Indexes the free time left by the planner's events.
+	 * @param planner	planner
+	 * @throws IllegalArgumentException	valid planner
+	 */
+	public TaskScheduler(Planner planner) throws IllegalArgumentException{
+
+		if(planner == null){
+			throw new IllegalArgumentException("Null Planner object!");
+		}
+		this.gaps = new TreeMap<>();
+		int cursor = 0;
+		for(int i = 0; i < planner.size(); i++){
+			Event event = planner.getEvent(i);
+			int start = event.getStart().toMinutes();
+			if(start > cursor){
+				gaps.put(cursor, start);
+			}
+			cursor = Math.max(cursor, event.getEnd().toMinutes());
+		}
+		if(cursor < MyTime.END_OF_DAY){
+			gaps.put(cursor, MyTime.END_OF_DAY);
+		}
+	}
+
+	/**
+	 * Report the free minutes left.
+	 * @return	minutes
+	 */
+	public int freeMinutes(){
+
+		int total = 0;
+		for(Map.Entry<Integer, Integer> gap : gaps.entrySet()){
+			total += gap.getValue() - gap.getKey();
+		}
+		return total;
+	}
+
+	/**
+	 * Find a placement for the task and reserve it. The planner itself is not changed.
+	 * @param task	task
+	 * @param strategy	strategy
+	 * @return	the event for the placement, or null if the task does not fit
+	 * @throws IllegalArgumentException	valid task and strategy
+	 */
+	public Event place(Task task, Strategy strategy) throws IllegalArgumentException{
+
+		if(task == null || strategy == null){
+			throw new IllegalArgumentException("Null Task or Strategy!");
+		}
+		int duration = task.getDuration();
+		int earliest = task.getEarliest().toMinutes();
+		int latestStart = task.getLatest().toMinutes() - duration;
+		Integer from = gaps.floorKey(earliest);
+		if(from == null){
+			from = earliest;
+		}
+		int bestGap = -1;
+		int bestStart = -1;
+		for(Map.Entry<Integer, Integer> gap : gaps.tailMap(from, true).entrySet()){
+			int start = Math.max(gap.getKey(), earliest);
+			if(start > latestStart){
+				break;
+			}
+			if(start + duration > gap.getValue()){
+				continue;
+			}
+			if(bestGap < 0 || gap.getValue() - gap.getKey() < gaps.get(bestGap) - bestGap){
+				bestGap = gap.getKey();
+				bestStart = start;
+			}
+			if(strategy == Strategy.EARLIEST_FIT || gap.getValue() - gap.getKey() == duration){
+				break;
+			}
+		}
+		if(bestGap < 0){
+			return null;
+		}
+		int gapEnd = gaps.remove(bestGap);
+		if(bestStart > bestGap){
+			gaps.put(bestGap, bestStart);
+		}
+		if(bestStart + duration < gapEnd){
+			gaps.put(bestStart + duration, gapEnd);
+		}
+		return new Event(MyTime.fromMinutes(bestStart), MyTime.fromMinutes(bestStart + duration), task.getDescription());
+	}
+
+	/**
+	 * Place a batch of tasks, in the given order, into the free time of the planner and add all the
+	 * placements to it in one bulk insert.
+	 * @param planner	planner
+	 * @param tasks	tasks
+	 * @param strategy	strategy
+	 * @return	the event created for each task, or null where a task did not fit
+	 * @throws IllegalArgumentException	valid arguments
+	 */
+	public static Event[] schedule(Planner planner, Task[] tasks, Strategy strategy) throws IllegalArgumentException{
+
+		if(tasks == null){
+			throw new IllegalArgumentException("Null Task array!");
+		}
+		TaskScheduler scheduler = new TaskScheduler(planner);
+		Event[] result = new Event[tasks.length];
+		int placed = 0;
+		for(int i = 0; i < tasks.length; i++){
+			result[i] = scheduler.place(tasks[i], strategy);
+			if(result[i] != null){
+				placed++;
+			}
+		}
+		Event[] batch = new Event[placed];
+		int next = 0;
+		for(Event event : result){
+			if(event != null){
+				batch[next++] = event;
+			}
+		}
+		planner.addEvents(batch);
+		return result;
+	}
+
+	/**
+	 * Create random tasks for benchmarking.
+	 * @param count	number of tasks
+	 * @param seed	random seed
+	 * @return	tasks
+	 */
+	private static Task[] randomTasks(int count, long seed){
+
+		Random random = new Random(seed);
+		Task[] tasks = new Task[count];
+		for(int i = 0; i < count; i++){
+			int duration = 1 + random.nextInt(30);
+			int earliest = random.nextInt(MyTime.END_OF_DAY - duration);
+			int latest = Math.min(MyTime.END_OF_DAY, earliest + duration + random.nextInt(240));
+			tasks[i] = new Task(duration, MyTime.fromMinutes(earliest), MyTime.fromMinutes(latest), "task " + i);
+		}
+		return tasks;
+	}
+
+	/**
+	 * 3 test cases, then a benchmark of both strategies with 10k tasks.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		Planner day = new Planner();
+		day.addEvent(new Event(new MyTime(9), new MyTime(10), "meeting"));
+		day.addEvent(new Event(new MyTime(10, 30), new MyTime(11), "call"));
+		day.addEvent(new Event(new MyTime(12), new MyTime(14), "lunch"));
+
+		// earliest fit takes the first hole in the window
+		Task reading = new Task(20, new MyTime(9), new MyTime(14), "reading");
+		Event[] placed = schedule(day, new Task[]{reading}, Strategy.EARLIEST_FIT);
+		if (placed[0] != null && placed[0].getStart().toString().equals("10:00")
+			&& day.size() == 4 && day.getEvent(1) == placed[0]){
+			System.out.println("Yay 1");
+		}
+
+		// best fit takes the tightest hole: 10:20-10:30 rather than 11:00-12:00
+		Task email = new Task(10, new MyTime(9), new MyTime(14), "email");
+		placed = schedule(day, new Task[]{email}, Strategy.BEST_FIT);
+		if (placed[0] != null && placed[0].getStart().toString().equals("10:20")){
+			System.out.println("Yay 2");
+		}
+
+		// a task that cannot fit is reported and not added
+		Task workshop = new Task(90, new MyTime(9), new MyTime(14), "workshop");
+		placed = schedule(day, new Task[]{workshop, email}, Strategy.EARLIEST_FIT);
+		if (placed[0] == null && placed[1] != null && placed[1].getStart().toString().equals("11:00")
+			&& day.size() == 6){
+			System.out.println("Yay 3");
+		}
+
+		for(Strategy strategy : Strategy.values()){
+			Task[] tasks = randomTasks(10000, 7);
+			for(int round = 0; round < 5; round++){
+				Planner planner = new Planner();
+				long begin = System.nanoTime();
+				Event[] result = schedule(planner, tasks, strategy);
+				long elapsed = System.nanoTime() - begin;
+				if(round == 4){
+					int count = 0;
+					for(Event event : result){
+						if(event != null){
+							count++;
+						}
+					}
+					System.out.printf("%s: %d of %d tasks placed in %.2f ms%n",
+							strategy, count, tasks.length, elapsed / 1e6);
+				}
+			}
+		}
+	}
+}
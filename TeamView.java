@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Views over the planners of a team. merged() walks the events of many planners in start time order
+ * with a k-way merge over their own sorted storage, without copying any of them. commonFreeSlots() finds
+ * the times when everyone is free by OR-ing each planner's busy minutes into one 1439-bit occupancy map,
+ * a word at a time, and reading the runs of clear bits.
+ * @author Hongjia Hao
+ */
+public class TeamView {
+
+	/**
+	 * Position of the merge in one planner.
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+
+		/**
+		 * Planner.
+		 */
+		private final Planner planner;
+		/**
+		 * Position of the planner in the team, to break ties.
+		 */
+		private final int rank;
+		/**
+		 * Index of the current event.
+		 */
+		private int index;
+		/**
+		 * Current event.
+		 */
+		private Event current;
+
+		/**
+		 * Constructor.
+		 * @param planner	planner
+		 * @param rank	position in the team
+		 */
+		Cursor(Planner planner, int rank){
+			this.planner = planner;
+			this.rank = rank;
+			this.index = 0;
+			this.current = planner.getEvent(0);
+		}
+
+		/**
+		 * Compare by current event, then by position in the team.
+		 * @param other	other cursor
+		 * @return	result of compare
+		 */
+		@Override
+		public int compareTo(Cursor other){
+
+			int result = current.compareTo(other.current);
+			if(result == 0){
+				result = Integer.compare(rank, other.rank);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private TeamView(){
+	}
+
+	/**
+	 * Iterate over the events of all the planners in ascending order of start time. Events starting at
+	 * the same time come in the order of their planners in the collection. The planners must not be
+	 * changed during the iteration.
+	 * @param planners	planners
+	 * @return	lazy iterator
+	 * @throws IllegalArgumentException	valid planners
+	 */
+	public static Iterator<Event> merged(Collection<Planner> planners) throws IllegalArgumentException{
+
+		if(planners == null){
+			throw new IllegalArgumentException("Null planners!");
+		}
+		PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, planners.size()));
+		int rank = 0;
+		for(Planner planner : planners){
+			if(planner == null){
+				throw new IllegalArgumentException("Null Planner object!");
+			}
+			if(planner.size() > 0){
+				heap.add(new Cursor(planner, rank));
+			}
+			rank++;
+		}
+		return new Iterator<Event>(){
+
+			@Override
+			public boolean hasNext(){
+				return !heap.isEmpty();
+			}
+
+			@Override
+			public Event next(){
+
+				Cursor cursor = heap.poll();
+				if(cursor == null){
+					throw new NoSuchElementException();
+				}
+				Event result = cursor.current;
+				cursor.index++;
+				if(cursor.index < cursor.planner.size()){
+					cursor.current = cursor.planner.getEvent(cursor.index);
+					heap.add(cursor);
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Find the slots of at least the given length during which no planner has an event. Events that
+	 * start and end at the same time occupy nothing.
+	 * @param planners	planners
+	 * @param minDuration	shortest slot wanted, in minutes
+	 * @return	free slots, as events with an empty description, in order
+	 * @throws IllegalArgumentException	valid planners and duration
+	 */
+	public static Event[] commonFreeSlots(Collection<Planner> planners, int minDuration) throws IllegalArgumentException{
+
+		if(planners == null){
+			throw new IllegalArgumentException("Null planners!");
+		}
+		if(minDuration < 1){
+			throw new IllegalArgumentException("Duration must be positive!");
+		}
+		BitSet busy = new BitSet(MyTime.END_OF_DAY);
+		for(Planner planner : planners){
+			if(planner == null){
+				throw new IllegalArgumentException("Null Planner object!");
+			}
+			for(int i = 0; i < planner.size(); i++){
+				Event event = planner.getEvent(i);
+				busy.set(event.getStart().toMinutes(), event.getEnd().toMinutes());
+			}
+			if(busy.nextClearBit(0) >= MyTime.END_OF_DAY){
+				return new Event[0];
+			}
+		}
+		List<Event> slots = new ArrayList<>();
+		int start = busy.nextClearBit(0);
+		while(start < MyTime.END_OF_DAY){
+			int end = busy.nextSetBit(start);
+			if(end < 0 || end > MyTime.END_OF_DAY){
+				end = MyTime.END_OF_DAY;
+			}
+			if(end - start >= minDuration){
+				slots.add(new Event(MyTime.fromMinutes(start), MyTime.fromMinutes(end)));
+			}
+			start = busy.nextClearBit(end);
+		}
+		return slots.toArray(new Event[0]);
+	}
+
+	/**
+	 * 3 test cases, then the time to find common slots for 5000 participants.
+	 * @param args	not used
+	 */
+	public static void main(String[] args){
+
+		Planner alice = new Planner();
+		alice.addEvent(new Event(new MyTime(9), new MyTime(10), "standup"));
+		alice.addEvent(new Event(new MyTime(13), new MyTime(14), "lunch"));
+		Planner bob = new Planner();
+		bob.addEvent(new Event(new MyTime(0), new MyTime(9), "sleep"));
+		bob.addEvent(new Event(new MyTime(9), new MyTime(9, 30), "standup"));
+		bob.addEvent(new Event(new MyTime(11), new MyTime(12, 30), "review"));
+		Planner carol = new Planner();
+		List<Planner> team = List.of(alice, bob, carol);
+
+		// merged order, ties by position in the team
+		Iterator<Event> merged = merged(team);
+		StringBuilder order = new StringBuilder();
+		while(merged.hasNext()){
+			order.append(merged.next().getDescription()).append(',');
+		}
+		if (order.toString().equals("sleep,standup,standup,review,lunch,")){
+			System.out.println("Yay 1");
+		}
+
+		// common free slots
+		Event[] slots = commonFreeSlots(team, 45);
+		if (slots.length == 2 && slots[0].toString().equals("10:00-11:00/")
+			&& slots[1].toString().equals("14:00-23:59/") && commonFreeSlots(team, 30).length == 3){
+			System.out.println("Yay 2");
+		}
+
+		// nobody busy means the whole day is free
+		slots = commonFreeSlots(List.of(carol), 1);
+		if (slots.length == 1 && slots[0].toString().equals("00:00-23:59/")){
+			System.out.println("Yay 3");
+		}
+
+		// busy for 3 random half hours of the 9:00-17:00 working day each
+		List<Planner> company = new ArrayList<>();
+		Random random = new Random(1);
+		for(int i = 0; i < 5000; i++){
+			Planner planner = new Planner();
+			for(int j = 0; j < 3; j++){
+				int start = 9 * 60 + random.nextInt(8 * 60 - 30);
+				planner.addEvent(new Event(MyTime.fromMinutes(start), MyTime.fromMinutes(start + 30), "work"));
+			}
+			company.add(planner);
+		}
+		for(int round = 0; round < 5; round++){
+			long begin = System.nanoTime();
+			slots = commonFreeSlots(company, 15);
+			long elapsed = System.nanoTime() - begin;
+			if(round == 4){
+				System.out.printf("5000 planners: %d common slots in %.2f ms%n", slots.length, elapsed / 1e6);
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD conflict kernel of ConflictScanner, using the incubating Vector API. It compares a whole
+ * vector of events against their previous ends and next starts at once. It lives in its own source root
+ * so that the main sources build without the incubator module; compile it on top of them with
+ * javac --add-modules jdk.incubator.vector -cp &lt;classes&gt; -d &lt;classes&gt; vector/*.java.
+ * ConflictScanner only loads it when the module is present at run time.
+ * @author Hongjia Hao
+ */
+class VectorConflictKernel implements ConflictScanner.Kernel {
+
+	/**
+	 * Preferred vector shape of the platform.
+	 */
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * Mark the conflicting events.
+	 * @param starts	start minutes, ascending
+	 * @param ends	end minutes
+	 * @param previousEnds	previousEnds[i] is the largest end among events 0..i-1, or Integer.MIN_VALUE
+	 * @param nextStarts	nextStarts[i] is the start of the first event of non-zero length after i, or
+	 * 					Integer.MAX_VALUE
+	 * @param conflicting	filled with true for each conflicting event
+	 * @return	number of conflicting events
+	 */
+	@Override
+	public int mark(int[] starts, int[] ends, int[] previousEnds, int[] nextStarts, boolean[] conflicting){
+
+		int n = starts.length;
+		int count = 0;
+		int i = 0;
+		int bound = SPECIES.loopBound(n);
+		for(; i < bound; i += SPECIES.length()){
+			IntVector start = IntVector.fromArray(SPECIES, starts, i);
+			IntVector end = IntVector.fromArray(SPECIES, ends, i);
+			VectorMask<Integer> earlier = start.compare(VectorOperators.LT, IntVector.fromArray(SPECIES, previousEnds, i));
+			VectorMask<Integer> later = IntVector.fromArray(SPECIES, nextStarts, i).compare(VectorOperators.LT, end);
+			VectorMask<Integer> conflict = start.compare(VectorOperators.LT, end).and(earlier.or(later));
+			conflict.intoArray(conflicting, i);
+			count += conflict.trueCount();
+		}
+		for(; i < n; i++){
+			conflicting[i] = starts[i] < ends[i] && (starts[i] < previousEnds[i] || nextStarts[i] < ends[i]);
+			if(conflicting[i]){
+				count++;
+			}
+		}
+		return count;
+	}
+}